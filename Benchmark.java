@@ -1,13 +1,41 @@
 import java.io.*;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.lang.invoke.VarHandle;
+import java.lang.management.BufferPoolMXBean;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.RecursiveAction;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.DoubleSupplier;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
 import java.util.stream.IntStream;
 
 import jdk.incubator.vector.*;
@@ -17,171 +45,4001 @@ import java.lang.management.ManagementFactory;
 public class Benchmark {
 
     private static final int[] MATRIX_SIZES = {64, 128, 256, 512, 1024};
-    private static final String[] VECTORIZATION_OPTIONS = {"none", "simd"};
+    // Rectangular sweeps {m, k, n}: A is m x k, B is k x n; measured with the flat fp64 SHAPE_ENGINES
+    private static final int[][] SHAPES = {{100000, 256, 64}, {256, 8192, 256}, {2048, 64, 2048}};
+    private static final String[] SHAPE_ENGINES = {"blocked", "splitk", "gemm", "gemm_ta", "outofcore", "summa", "shm"};
+    // Matrix chains M1 * ... * Mq with Mi of size dims[i - 1] x dims[i]; each is run in the
+    // planned order ("chain") and left to right ("chain_naive")
+    private static final int[][] CHAINS = {{4096, 16, 4096, 16}, {512, 2048, 32, 2048, 512, 8}};
+    private static final String[] CHAIN_ENGINES = {"chain", "chain_naive"};
+
+    // The "power" engines raise the row-stochastic version of A (a Markov transition matrix) to
+    // this power by squaring: "power" ping-pongs between preallocated buffers, "power_naive"
+    // calls multiplyMatrices with a new transpose and result for every step
+    private static final long POWER_EXPONENT = 20;
+    private static final String[] LAYOUT_OPTIONS = {"jagged", "flat", "offheap"};
+    private static final String[] ENGINE_OPTIONS = {"blocked", "packed", "recursive", "strassen", "sparse", "splitk", "gemm", "gemm_ta",
+            "power", "power_naive", "syrk", "syrk_naive", "outofcore", "summa", "shm"};
+    // Element type the kernels compute in; results are checked against the fp64 product
+    private static final String[] PRECISION_OPTIONS = {"fp64", "fp32", "fp16", "int32", "int8"};
+    // "per_call" transposes/packs B inside every multiplication, "cached" prepares it once per configuration
+    private static final String[] PREPARATION_OPTIONS = {"per_call", "cached"};
+    private static final String[] VECTORIZATION_OPTIONS = {"none", "simd", "fma"};
     private static final int[] PARALLELIZATION_OPTIONS = {1, 2, 4, 6, 8, 10};
 
+    // Register tile of the "fma" micro-kernel: FMA_MR rows of A against FMA_NR rows of BT
+    private static final int FMA_MR = 4;
+    private static final int FMA_NR = 2;
+
+    // Cache blocking of the "packed" engine: MC x KC panels of A (L2), KC x NC panels of B (L3)
+    private static final int PACK_MC = 128;
+    private static final int PACK_KC = 256;
+    private static final int PACK_NC = 2048;
+
+    // The "recursive" engine halves the largest of m, n, k until every extent is at most this
+    private static final int RECURSIVE_CUTOFF = 64;
+
+    // The "strassen" engine recurses until sub-matrices are at most the crossover edge, then
+    // uses the blocked kernels; its 7 sub-products run in parallel on the top levels only
+    // because every parallel level multiplies the preallocated workspace by 7/4
+    private static final int STRASSEN_CROSSOVER = 128;
+    private static final int STRASSEN_PARALLEL_LEVELS = 2;
+
+    // The "splitk" engine cuts k into at most SPLIT_K_SLICES slices of at least SPLIT_K_MIN_DEPTH,
+    // a count that depends only on k so the reduction order is the same for every thread count
+    private static final int SPLIT_K_SLICES = 16;
+    private static final int SPLIT_K_MIN_DEPTH = 64;
+
+    // Parallel blocked engine: C is cut into a 2D grid of (ii, jj) tiles visited in TILE_ORDER
+    // ("row", "morton" or "hilbert"). Tiles shrink down to MIN_TILE_EDGE until every worker
+    // gets MIN_TILES_PER_WORKER of them; sizes too small for that run on fewer workers.
+    private static final String TILE_ORDER = "hilbert";
+    private static final int MIN_TILES_PER_WORKER = 2;
+    private static final int MIN_TILE_EDGE = 16;
+
+    // The "sparse" engine stores an operand as CSR when at most this share of its entries is
+    // non-zero: A alone gives sparse x dense, A and B together give sparse x sparse
+    private static final double SPARSE_DENSITY_THRESHOLD = 0.10;
+
+    // Edge of the cells in the zero-tile occupancy maps; kernel tiles are rounded out to whole cells
+    private static final int OCCUPANCY_CELL = 16;
+
+    // Output-tile epilogue of the blocked engine: none, applied per C tile right after its last
+    // k-block ("fused"), or applied afterwards as one pass over C per operation ("unfused")
+    private static final String[] EPILOGUE_OPTIONS = {"none", "fused", "unfused"};
+
+    // Out-of-core engine: operands are converted once into mapped fp64 files under OOC_DIR and
+    // multiplied in OOC_TILE x OOC_TILE tiles, so the heap holds five tiles whatever the size
+    private static final String OOC_DIR = "./matrices/outofcore";
+    private static final int OOC_TILE = 512;
+    private static final ValueLayout.OfDouble OOC_DOUBLE = ValueLayout.JAVA_DOUBLE.withOrder(ByteOrder.LITTLE_ENDIAN);
+
+    // Multi-process engines: the thread count is the number of worker JVMs on localhost ("summa"
+    // arranges them as a pr x pc grid); a worker that has not reported within this time is a failure,
+    // and so is a run whose result has not come back within the result timeout
+    private static final long WORKER_START_TIMEOUT_MS = 30_000;
+    private static final long WORKER_RESULT_TIMEOUT_MS = 600_000;
+    // Smallest heap a worker JVM is given on top of the data it holds
+    private static final long WORKER_HEAP_FLOOR = 64L << 20;
+
+    // Shared-memory "shm" engine: A, B and C live in files under SHM_DIR (a tmpfs on Linux)
+    // mapped by the coordinator and every worker; workers take C tiles of SHM_TILE round robin
+    private static final String SHM_DIR = "/dev/shm";
+    private static final int SHM_TILE = 256;
+
     private static final int WARMUP_ITERATIONS = 5;
     private static final int REPETITIONS = 15;
 
     private static final String OUTPUT_CSV = "benchmark_raw_results.csv";
     private static final String MATRIX_DIR = "./matrices";
+    // First int32 of a matrix file written with a dimension header ("MTX1" in little-endian bytes)
+    private static final int MATRIX_FILE_MAGIC = 0x3158544D;
+
+    // Autotuning: candidate tile edges for the blocked engine, plus the wisdom file that keeps
+    // the winners per host so later runs start from tuned values (FFTW-style)
+    private static final int[] TUNE_BLOCK_SIZES = {16, 32, 48, 64, 96, 128, 192, 256};
+    private static final int[] TUNE_PACK_MC = {32, 64, 96, 128, 192, 256};
+    private static final int[] TUNE_PACK_KC = {64, 128, 192, 256, 384, 512};
+    private static final int[] TUNE_PACK_NC = {256, 512, 1024, 2048, 4096};
+    private static final int[] TUNE_STRASSEN_CROSSOVERS = {32, 64, 128, 256, 512};
+    private static final int TUNE_WARMUP = 2;
+    private static final int TUNE_RUNS = 3;
+    private static final String WISDOM_FILE = "benchmark_wisdom.properties";
+    private static final Properties WISDOM = new Properties();
+
+    private static long prevCpuTime = 0;
+    private static long prevNanoTime = 0;
+
+    public static void main(String[] args) throws Exception {
+        String mode = args.length > 0 ? args[0] : "benchmark";
+        if (mode.equals("worker")) {
+            // Started by the "summa" engine: worker <coordinator port> <rank>; all settings come from the coordinator
+            SummaWorker.run(Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+            return;
+        }
+        if (mode.equals("shm-worker")) {
+            // Started by the "shm" engine: shm-worker <file prefix> <rank> <processes> <m> <k> <n> <vec> <block size>
+            int[] v = new int[4];
+            for (int i = 0; i < v.length; i++) v[i] = Integer.parseInt(args[i + 3]);
+            SharedMemoryWorker.run(args[1], Integer.parseInt(args[2]), v[0], v[1], v[2], v[3], args[7],
+                    Integer.parseInt(args[8]));
+            return;
+        }
+        loadWisdom();
+
+        if (mode.equals("benchmark")) {
+            runBenchmark();
+        } else if (mode.equals("autotune")) {
+            autotune();
+        } else {
+            System.out.println("[ERROR] Unknown mode '" + mode + "'. Expected one of: benchmark, autotune");
+        }
+    }
+
+    private static void runBenchmark() throws Exception {
+        writeCsvHeader(OUTPUT_CSV);
+        OperatingSystemMXBean osBean =
+                (OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+
+        int cores = osBean.getAvailableProcessors();
+        prevCpuTime = osBean.getProcessCpuTime();
+        prevNanoTime = System.nanoTime();
+
+        // Attempt to stabilize CPU frequency (Windows/Linux may require admin/root)
+        stabilizeCpuFrequency();
+
+        for (int size : MATRIX_SIZES) {
+            Inputs in = loadInputs(size);
+            if (in == null) continue;
+
+            for (String layout : LAYOUT_OPTIONS) {
+                for (String engine : ENGINE_OPTIONS)
+                    for (String precision : PRECISION_OPTIONS)
+                        for (String vec : VECTORIZATION_OPTIONS)
+                            for (String prep : PREPARATION_OPTIONS) {
+                                if (!isSupported(layout, engine, precision, vec, prep)) continue;
+                                if (!ENGINES.get(engine).measures(in)) continue;
+                                for (String epilogue : EPILOGUE_OPTIONS) {
+                                    if (!supportsEpilogue(layout, engine, precision, epilogue)) continue;
+                                    for (int threads : PARALLELIZATION_OPTIONS)
+                                        runConfiguration(osBean, cores, layout, engine, precision, vec, prep, epilogue, threads, in);
+                                }
+                            }
+                in.dropLayoutCopies();
+            }
+
+            System.gc();
+            Thread.sleep(100);
+        }
+
+        // Rectangular operands only have the flat fp64 engines that work on index ranges of m, k and n
+        for (int[] shape : SHAPES) {
+            Inputs in = loadInputs(shape[0], shape[1], shape[2]);
+            if (in == null) continue;
+
+            for (String engine : SHAPE_ENGINES)
+                for (String vec : VECTORIZATION_OPTIONS)
+                    for (String prep : PREPARATION_OPTIONS)
+                        for (String epilogue : EPILOGUE_OPTIONS) {
+                            if (!isSupported("flat", engine, "fp64", vec, prep)) continue;
+                            if (!supportsEpilogue("flat", engine, "fp64", epilogue)) continue;
+                            for (int threads : PARALLELIZATION_OPTIONS)
+                                runConfiguration(osBean, cores, "flat", engine, "fp64", vec, prep, epilogue, threads, in);
+                        }
+
+            System.gc();
+            Thread.sleep(100);
+        }
+
+        // Chains are evaluated with gemm straight from the loaded operands, so there is nothing to prepare
+        for (int c = 0; c < CHAINS.length; c++) {
+            Inputs in = loadChain(c, CHAINS[c]);
+            if (in == null) continue;
+
+            for (String engine : CHAIN_ENGINES)
+                for (String vec : VECTORIZATION_OPTIONS)
+                    for (int threads : PARALLELIZATION_OPTIONS)
+                        runConfiguration(osBean, cores, "flat", engine, "fp64", vec, "per_call", "none", threads, in);
+
+            System.gc();
+            Thread.sleep(100);
+        }
+    }
+
+    private static void runConfiguration(OperatingSystemMXBean osBean, int cores, String layout, String engine,
+                                         String precision, String vec, String prep, String epilogue, int threads, Inputs in)
+            throws InterruptedException {
+        Engine e = ENGINES.get(engine);
+        if (e == null) throw new IllegalArgumentException("Unknown engine '" + engine + "'");
+        int blockSize = blockSizeFor(in, vec, e.tuningThreads(threads));
+        Run r = new Run(osBean, cores, in, layout, engine, precision, vec, prep, epilogue, threads, blockSize,
+                e.workers(layout, in, threads, blockSize));
+        r.stats.blocking = e.blocking(r);
+        // Autotune only sweeps square sizes, so shapes always run with the built-in defaults
+        if (in.size < 0) r.stats.blocking += "/untuned";
+
+        System.out.printf("[INFO] Testing size=%s layout=%s engine=%s precision=%s vectorization=%s prep=%s epilogue=%s threads=%d workers=%d blocking=%s%n",
+                in.label(), layout, engine, precision, vec, prep, epilogue, threads, r.stats.workers, r.stats.blocking);
+
+        try {
+            e.run(r);
+        } finally {
+            if (r.pool != null) r.pool.shutdown();
+        }
+        System.gc();
+        Thread.sleep(50);
+    }
+
+    // Not every kernel exists for every storage layout; unsupported combinations are skipped
+    private static boolean isSupported(String layout, String engine, String precision, String vec, String prep) {
+        // Reduced and integer precisions only have a flat blocked kernel; integer lanes have no fma
+        if (!precision.equals("fp64"))
+            return layout.equals("flat") && engine.equals("blocked") && !(precision.startsWith("int") && vec.equals("fma"));
+        // Only flat matrices have a prepared-operand form
+        if (prep.equals("cached") && !layout.equals("flat")) return false;
+        // The register-tiled micro-kernels are only implemented for the flat layout
+        if (vec.equals("fma") && !layout.equals("flat")) return false;
+        return ENGINES.get(engine).supports(layout, vec, prep);
+    }
+
+    // Epilogues are hooked into the tile loop of the flat fp64 blocked engine only
+    private static boolean supportsEpilogue(String layout, String engine, String precision, String epilogue) {
+        return epilogue.equals("none") || layout.equals("flat") && engine.equals("blocked") && precision.equals("fp64");
+    }
+
+    // ---------------- ENGINES ----------------
+    // One configuration being measured: the sweep parameters, the tuned blocking and the pool
+    // the engine runs on
+    static class Run {
+        final OperatingSystemMXBean osBean;
+        final int cores;
+        final Inputs in;
+        final String layout, engine, precision, vec, prep, epilogue;
+        final int threads, blockSize;
+        final boolean vectorize;
+        // Blockings of the packed and strassen engines, looked up like blockSize
+        final int[] packBlocking;
+        final int crossover;
+        // Null when the configuration runs on a single worker
+        final ForkJoinPool pool;
+        final RunStats stats = new RunStats();
+
+        Run(OperatingSystemMXBean osBean, int cores, Inputs in, String layout, String engine, String precision,
+            String vec, String prep, String epilogue, int threads, int blockSize, int workers) {
+            this.osBean = osBean;
+            this.cores = cores;
+            this.in = in;
+            this.layout = layout;
+            this.engine = engine;
+            this.precision = precision;
+            this.vec = vec;
+            this.prep = prep;
+            this.epilogue = epilogue;
+            this.threads = threads;
+            this.blockSize = blockSize;
+            this.vectorize = vec.equals("simd");
+            this.packBlocking = packBlockingFor(in, vec, threads);
+            this.crossover = strassenCrossoverFor(in, vec, threads);
+            this.pool = workers > 1 ? new ForkJoinPool(workers) : null;
+            stats.precision = precision;
+            stats.preparation = prep;
+            stats.epilogue = epilogue;
+            stats.workers = workers;
+        }
+
+        boolean parallel() {
+            return pool != null;
+        }
+
+        void iterate(Runnable reset, Runnable multiply) throws InterruptedException {
+            runIterations(osBean, cores, in, layout, engine, vec, threads, stats, reset, multiply);
+        }
+
+        // Prepares an operand once, outside the timed runs
+        <T> T setup(Supplier<T> prepare) {
+            long t0 = System.nanoTime();
+            T prepared = prepare.get();
+            stats.setupNanos = System.nanoTime() - t0;
+            return prepared;
+        }
+
+        // "cached" prepares the operand once; "per_call" prepares it inside every run and reports
+        // the time spent on it separately
+        <T> void iterate(Supplier<T> prepare, Runnable reset, Consumer<T> multiply) throws InterruptedException {
+            if (prep.equals("cached")) {
+                T prepared = setup(prepare);
+                iterate(reset, () -> multiply.accept(prepared));
+            } else {
+                iterate(reset, () -> {
+                    long t0 = System.nanoTime();
+                    T prepared = prepare.get();
+                    stats.prepNanos.addAndGet(System.nanoTime() - t0);
+                    multiply.accept(prepared);
+                });
+            }
+        }
+
+        // Pre-touched m x n result checked against the fp64 product
+        DenseMatrix denseResult() {
+            DenseMatrix C = new DenseMatrix(in.m, in.n);
+            preTouchMatrix(C);
+            stats.error = () -> maxAbsError(C, in.reference);
+            return C;
+        }
+    }
+
+    // What the benchmark knows about an engine: the combinations it has a kernel for, the pool
+    // and blocking a configuration gets, and how its operands are set up, timed and checked.
+    // Precision, layout and vectorization rules shared by every engine stay in isSupported.
+    abstract static class Engine {
+        // Most engines work on flat index ranges
+        boolean supports(String layout, String vec, String prep) {
+            return layout.equals("flat");
+        }
+
+        // Whether the sweep measures the engine on these inputs at all
+        boolean measures(Inputs in) {
+            return true;
+        }
+
+        // Thread count whose tuned block size the engine uses
+        int tuningThreads(int threads) {
+            return threads;
+        }
+
+        int workers(String layout, Inputs in, int threads, int blockSize) {
+            return threads;
+        }
+
+        String blocking(Run r) {
+            return String.valueOf(r.blockSize);
+        }
+
+        abstract void run(Run r) throws InterruptedException;
+    }
+
+    // Keyed by the names in ENGINE_OPTIONS, SHAPE_ENGINES and CHAIN_ENGINES
+    private static final Map<String, Engine> ENGINES = new LinkedHashMap<>();
+
+    static {
+        ENGINES.put("blocked", new Engine() {
+            // Every layout and precision has a blocked kernel
+            @Override
+            boolean supports(String layout, String vec, String prep) {
+                return true;
+            }
+
+            // The tiled parallel path decides how many workers a size can keep busy
+            @Override
+            int workers(String layout, Inputs in, int threads, int blockSize) {
+                return layout.equals("flat") ? tileWorkers(in.m, in.n, threads, blockSize) : threads;
+            }
+
+            @Override
+            void run(Run r) throws InterruptedException {
+                Inputs in = r.in;
+                int size = in.size, bs = r.blockSize;
+                if (r.layout.equals("jagged")) {
+                    JaggedMatrix AJ = in.jaggedA(), BJ = in.jaggedB();
+                    JaggedMatrix C = new JaggedMatrix(size);
+                    preTouchMatrix(C); // pre-touch result matrix as well
+                    r.stats.error = () -> maxAbsError(C, in.reference);
+                    r.iterate(C::clear, () -> multiplyMatrices(AJ, BJ, r.vectorize, r.parallel(), C, r.pool, bs));
+                } else if (r.layout.equals("offheap")) {
+                    // Confined segments may only be touched by the owning thread, so worker pools need a shared arena
+                    try (Arena arena = r.parallel() ? Arena.ofShared() : Arena.ofConfined()) {
+                        OffHeapMatrix AO = toOffHeap(in.A, arena);
+                        OffHeapMatrix BO = toOffHeap(in.B, arena);
+                        OffHeapMatrix C = new OffHeapMatrix(size, arena);
+                        preTouchMatrix(C);
+                        r.stats.error = () -> maxAbsError(C, in.reference);
+                        r.iterate(C::clear, () -> multiplyMatrices(AO, BO, r.vectorize, r.parallel(), C, r.pool, bs));
+                    }
+                } else if (r.precision.equals("int32")) {
+                    IntMatrix AI = in.AI;
+                    LongMatrix C = new LongMatrix(size);
+                    r.stats.error = () -> maxAbsError(C, in.reference);
+                    r.iterate(() -> transposeMatrix(in.BI), C::clear,
+                            BT -> multiplyInt(AI, BT, C, r.vectorize, r.pool, bs));
+                    // Integer sums below 2^53 are exact in double too, so the two engines must agree bit for bit
+                    if (r.stats.maxAbsError != 0)
+                        System.out.printf("[ERROR] int32 result differs from the fp64 result by up to %.0f%n", r.stats.maxAbsError);
+                } else if (r.precision.equals("int8")) {
+                    QuantizedMatrix AQ = in.quantizedA();
+                    IntMatrix acc = new IntMatrix(size);
+                    FloatMatrix C = new FloatMatrix(size);
+                    r.stats.error = () -> maxAbsError(C, in.reference);
+                    r.iterate(() -> quantize(transposeMatrix(in.B)), () -> {
+                        acc.clear();
+                        C.clear();
+                    }, BT -> multiplyQuantized(AQ, BT, acc, C, r.vectorize, r.pool, bs));
+                } else if (r.precision.equals("fp16")) {
+                    HalfMatrix AH = in.halfA(), BH = in.halfB();
+                    FloatMatrix C = new FloatMatrix(size);
+                    r.stats.error = () -> maxAbsError(C, in.reference);
+                    r.iterate(() -> transposeMatrix(BH), C::clear, BT -> multiplyHalf(AH, BT, C, r.vec, r.pool, bs));
+                } else if (r.precision.equals("fp32")) {
+                    FloatMatrix AF = in.floatA(), BF = in.floatB();
+                    FloatMatrix C = new FloatMatrix(size);
+                    r.stats.error = () -> maxAbsError(C, in.reference);
+                    r.iterate(() -> transposeMatrix(BF), C::clear, BT -> multiplyFloat(AF, BT, C, r.vec, r.pool, bs));
+                } else {
+                    DenseMatrix A = in.A, C = r.denseResult();
+                    Consumer<PreparedB> multiply;
+                    if (r.epilogue.equals("none")) {
+                        multiply = prepared -> multiplyMatrices(A, prepared, r.vec, r.parallel(), C, r.pool, bs);
+                    } else {
+                        Epilogue epi = benchmarkEpilogue(in.m, in.n);
+                        // The expected result goes through the same operations once, outside the timed region
+                        DenseMatrix expected = new DenseMatrix(in.m, in.n);
+                        System.arraycopy(in.reference.data, 0, expected.data, 0, expected.data.length);
+                        epi.apply(expected, 0, in.m, 0, in.n);
+                        r.stats.error = () -> maxAbsError(C, expected);
+                        if (r.epilogue.equals("fused"))
+                            multiply = prepared -> multiplyMatrices(A, prepared, r.vec, r.parallel(), C, r.pool, bs, epi);
+                        else
+                            multiply = prepared -> {
+                                multiplyMatrices(A, prepared, r.vec, r.parallel(), C, r.pool, bs);
+                                epi.apply(C, 0, in.m, 0, in.n);
+                            };
+                    }
+                    // Only the blocked kernel reads the occupancy map, so only it pays for the scan
+                    r.iterate(() -> PreparedB.transposedWithOccupancy(in.B), C::clear, multiply);
+                }
+            }
+        });
+
+        ENGINES.put("packed", new Engine() {
+            // Packing copies out of flat arrays; its micro-kernel is either scalar or fma
+            @Override
+            boolean supports(String layout, String vec, String prep) {
+                return layout.equals("flat") && !vec.equals("simd");
+            }
+
+            @Override
+            String blocking(Run r) {
+                return r.packBlocking[0] + "x" + r.packBlocking[1] + "x" + r.packBlocking[2];
+            }
+
+            @Override
+            void run(Run r) throws InterruptedException {
+                PackedEngine packed = new PackedEngine(r.packBlocking[0], r.packBlocking[1], r.packBlocking[2],
+                        r.vec.equals("fma"), r.stats);
+                DenseMatrix A = r.in.A, B = r.in.B, C = r.denseResult();
+                if (r.prep.equals("cached")) {
+                    PreparedB prepared = r.setup(() -> packed.prepare(B));
+                    r.iterate(C::clear, () -> packed.multiply(A, prepared, C, r.pool));
+                } else {
+                    r.iterate(C::clear, () -> packed.multiply(A, B, C, r.pool));
+                }
+            }
+        });
+
+        ENGINES.put("recursive", new Engine() {
+            @Override
+            String blocking(Run r) {
+                return String.valueOf(RECURSIVE_CUTOFF);
+            }
+
+            @Override
+            void run(Run r) throws InterruptedException {
+                DenseMatrix A = r.in.A, C = r.denseResult();
+                r.iterate(() -> PreparedB.transposed(r.in.B), C::clear,
+                        prepared -> multiplyRecursive(A, prepared, r.vec, C, r.pool, RECURSIVE_CUTOFF));
+            }
+        });
+
+        ENGINES.put("strassen", new Engine() {
+            @Override
+            String blocking(Run r) {
+                return String.valueOf(r.crossover);
+            }
+
+            @Override
+            void run(Run r) throws InterruptedException {
+                DenseMatrix A = r.in.A, C = r.denseResult();
+                StrassenEngine strassen = new StrassenEngine(r.in.size, r.crossover, r.vec, r.pool);
+                r.iterate(() -> PreparedB.transposed(r.in.B), C::clear, prepared -> strassen.multiply(A, prepared, C));
+            }
+        });
+
+        ENGINES.put("sparse", new Engine() {
+            // CSR rows are scaled with plain or simd axpy
+            @Override
+            boolean supports(String layout, String vec, String prep) {
+                return layout.equals("flat") && !vec.equals("fma");
+            }
+
+            // Inputs too dense for CSR would only repeat the blocked sweep under another name
+            @Override
+            boolean measures(Inputs in) {
+                return csrPays(in);
+            }
+
+            @Override
+            String blocking(Run r) {
+                return sparsePath(r.in);
+            }
+
+            @Override
+            void run(Run r) throws InterruptedException {
+                CsrMatrix AS = r.in.csrA();
+                DenseMatrix B = r.in.B;
+                if (sparsePath(r.in).equals("spgemm")) {
+                    CsrMatrix[] C = new CsrMatrix[1];
+                    r.stats.error = () -> maxAbsError(toDense(C[0]), r.in.reference);
+                    r.iterate(() -> toCsr(B), () -> C[0] = null, BS -> C[0] = multiplySparse(AS, BS, r.pool));
+                } else {
+                    // B stays dense and row-major, so there is nothing to prepare
+                    DenseMatrix C = r.denseResult();
+                    r.iterate(C::clear, () -> multiplySparse(AS, B, C, r.vectorize, r.pool));
+                }
+            }
+        });
+
+        ENGINES.put("splitk", new Engine() {
+            // Split-K keeps one blocking for all thread counts so its sums are bitwise identical
+            @Override
+            int tuningThreads(int threads) {
+                return 1;
+            }
+
+            @Override
+            String blocking(Run r) {
+                return splitKSlices(r.in.k) + "x" + r.blockSize;
+            }
+
+            @Override
+            void run(Run r) throws InterruptedException {
+                DenseMatrix A = r.in.A, C = r.denseResult();
+                SplitKEngine splitK = new SplitKEngine(r.in.m, r.in.k, r.in.n, r.vec, r.blockSize, r.pool);
+                r.iterate(() -> PreparedB.transposed(r.in.B), C::clear, prepared -> splitK.multiply(A, prepared, C));
+                checkReproducible(r.in.label() + "/" + r.vec + "/" + r.prep, r.threads, C);
+            }
+        });
+
+        ENGINES.put("gemm", new Engine() {
+            @Override
+            int workers(String layout, Inputs in, int threads, int blockSize) {
+                return tileWorkers(in.m, in.n, threads, blockSize);
+            }
+
+            @Override
+            void run(Run r) throws InterruptedException {
+                DenseMatrix A = r.in.A, B = r.in.B, C = r.denseResult();
+                // beta = 0 must never read C, so start from garbage and skip the clear between runs
+                Arrays.fill(C.data, Double.NaN);
+                if (r.prep.equals("cached")) {
+                    // B^T prepared once is consumed in place through transB
+                    DenseMatrix BT = r.setup(() -> transposeMatrix(B));
+                    r.iterate(() -> { }, () -> gemm(false, true, 1.0, A, BT, 0.0, C, r.vec, r.pool, r.blockSize));
+                } else {
+                    // B is read as it is, row by row, so there is no transpose at all
+                    r.iterate(() -> { }, () -> gemm(false, false, 1.0, A, B, 0.0, C, r.vec, r.pool, r.blockSize));
+                }
+            }
+        });
+
+        ENGINES.put("gemm_ta", new Engine() {
+            @Override
+            int workers(String layout, Inputs in, int threads, int blockSize) {
+                return tileWorkers(in.m, in.n, threads, blockSize);
+            }
+
+            @Override
+            void run(Run r) throws InterruptedException {
+                // A arrives stored as A^T and goes through transA. Every run computes
+                // 2 * A * B + 0.5 * C0 over a known C0, restored outside the timed region, so alpha and
+                // a beta that is neither 0 nor 1 are checked against the reference as well.
+                Inputs in = r.in;
+                DenseMatrix AT = transposeMatrix(in.A), B = in.B;
+                DenseMatrix C = new DenseMatrix(in.m, in.n), C0 = new DenseMatrix(in.m, in.n);
+                DenseMatrix expected = new DenseMatrix(in.m, in.n);
+                for (int i = 0; i < in.m; i++)
+                    for (int j = 0; j < in.n; j++) {
+                        C0.data[i * C0.ld + j] = (i - j) % 7;
+                        expected.data[i * expected.ld + j] = 2.0 * in.reference.data[i * in.reference.ld + j]
+                                + 0.5 * C0.data[i * C0.ld + j];
+                    }
+                preTouchMatrix(C);
+                r.stats.error = () -> maxAbsError(C, expected);
+                Runnable reset = () -> System.arraycopy(C0.data, 0, C.data, 0, C.data.length);
+                if (r.prep.equals("cached")) {
+                    // Both operands transposed: the dot-product kernel with an A panel copy
+                    DenseMatrix BT = r.setup(() -> transposeMatrix(B));
+                    r.iterate(reset, () -> gemm(true, true, 2.0, AT, BT, 0.5, C, r.vec, r.pool, r.blockSize));
+                } else {
+                    // B as stored: the row-update kernel reading A^T columns
+                    r.iterate(reset, () -> gemm(true, false, 2.0, AT, B, 0.5, C, r.vec, r.pool, r.blockSize));
+                }
+            }
+        });
+
+        ENGINES.put("power", new Engine() {
+            // A power is recomputed from A on every call, so there is nothing to prepare
+            @Override
+            boolean supports(String layout, String vec, String prep) {
+                return layout.equals("flat") && prep.equals("per_call");
+            }
+
+            @Override
+            String blocking(Run r) {
+                return "p" + POWER_EXPONENT + "@" + r.blockSize;
+            }
+
+            @Override
+            void run(Run r) throws InterruptedException {
+                int size = r.in.size;
+                DenseMatrix P = r.in.stochasticA(), C = r.denseResult();
+                DenseMatrix[] scratch = {new DenseMatrix(size), new DenseMatrix(size)};
+                for (DenseMatrix S : scratch) preTouchMatrix(S);
+                r.stats.steps = powerSteps(POWER_EXPONENT);
+                r.stats.flops = 2.0 * size * size * size * r.stats.steps;
+                r.stats.error = () -> maxAbsError(C, r.in.powerReference());
+                r.iterate(() -> { }, () -> matrixPower(P, POWER_EXPONENT, C, scratch, r.vec, r.pool, r.blockSize));
+            }
+        });
+
+        ENGINES.put("power_naive", new Engine() {
+            @Override
+            boolean supports(String layout, String vec, String prep) {
+                return layout.equals("flat") && prep.equals("per_call");
+            }
+
+            @Override
+            String blocking(Run r) {
+                return "p" + POWER_EXPONENT + "@" + r.blockSize;
+            }
+
+            @Override
+            void run(Run r) throws InterruptedException {
+                int size = r.in.size;
+                DenseMatrix P = r.in.stochasticA();
+                DenseMatrix[] C = new DenseMatrix[1];
+                r.stats.steps = powerSteps(POWER_EXPONENT);
+                r.stats.flops = 2.0 * size * size * size * r.stats.steps;
+                r.stats.error = () -> maxAbsError(C[0], r.in.powerReference());
+                r.iterate(() -> C[0] = null,
+                        () -> C[0] = matrixPowerAllocating(P, POWER_EXPONENT, r.vec, r.parallel(), r.pool, r.blockSize));
+            }
+        });
+
+        ENGINES.put("syrk", new Engine() {
+            // A * A^T has a single operand, read in place
+            @Override
+            boolean supports(String layout, String vec, String prep) {
+                return layout.equals("flat") && prep.equals("per_call");
+            }
+
+            @Override
+            String blocking(Run r) {
+                return "AAt@" + r.blockSize;
+            }
+
+            @Override
+            void run(Run r) throws InterruptedException {
+                int size = r.in.size;
+                DenseMatrix A = r.in.A, C = r.denseResult();
+                r.stats.error = () -> maxAbsError(C, r.in.gramReference());
+                r.stats.flops = (double) size * (size + 1) * size;
+                // The lower triangle is overwritten, so there is no clear pass
+                r.iterate(() -> { }, () -> syrk(A, C, true, r.vec, r.pool, r.blockSize));
+            }
+        });
+
+        ENGINES.put("syrk_naive", new Engine() {
+            // The general path transposes A per call
+            @Override
+            boolean supports(String layout, String vec, String prep) {
+                return layout.equals("flat") && prep.equals("per_call");
+            }
+
+            @Override
+            String blocking(Run r) {
+                return "AAt@" + r.blockSize;
+            }
+
+            @Override
+            void run(Run r) throws InterruptedException {
+                DenseMatrix A = r.in.A, C = r.denseResult();
+                r.stats.error = () -> maxAbsError(C, r.in.gramReference());
+                // A^T is the caller's B, and multiplyMatrices transposes it back
+                DenseMatrix AT = transposeMatrix(A);
+                r.iterate(C::clear, () -> multiplyMatrices(A, AT, r.vec, r.parallel(), C, r.pool, r.blockSize));
+            }
+        });
+
+        ENGINES.put("outofcore", new Engine() {
+            // Operands are converted into mapped files once per configuration
+            @Override
+            boolean supports(String layout, String vec, String prep) {
+                return layout.equals("flat") && prep.equals("cached");
+            }
+
+            @Override
+            String blocking(Run r) {
+                return OOC_TILE + "@" + r.blockSize;
+            }
+
+            @Override
+            void run(Run r) throws InterruptedException {
+                Inputs in = r.in;
+                Path dir = Paths.get(OOC_DIR);
+                Path fileA = dir.resolve(in.fileA + ".f64"), fileB = dir.resolve(in.fileB + ".f64");
+                Path fileC = dir.resolve("C_" + in.label() + ".f64");
+                // The prefetch thread and the pool workers all read the mappings
+                try (Arena arena = Arena.ofShared(); OutOfCoreEngine ooc = new OutOfCoreEngine(OOC_TILE, r.vec, r.pool, r.blockSize)) {
+                    Files.createDirectories(dir);
+                    long t0 = System.nanoTime();
+                    MappedMatrix AM = toMapped(in.fileA, fileA, arena);
+                    MappedMatrix BM = toMapped(in.fileB, fileB, arena);
+                    r.stats.setupNanos = System.nanoTime() - t0;
+                    MappedMatrix C = new MappedMatrix(fileC, in.m, in.n, arena);
+                    System.out.printf("[INFO] out-of-core operands %.1f MB on disk, heap working set %.1f MB%n",
+                            (AM.bytes() + BM.bytes() + C.bytes()) / (1024.0 * 1024.0), ooc.workingSetBytes() / (1024.0 * 1024.0));
+                    r.stats.error = () -> maxAbsError(C, in.reference);
+                    // Every C tile is stored by its first k-step, so nothing needs clearing
+                    r.iterate(() -> { }, () -> ooc.multiply(AM, BM, C));
+                } catch (IOException e) {
+                    System.out.println("[ERROR] Out-of-core run failed: " + e.getMessage());
+                }
+                try {
+                    for (Path f : new Path[]{fileA, fileB, fileC}) Files.deleteIfExists(f);
+                } catch (IOException e) {
+                    System.out.println("[WARN] Could not remove out-of-core files: " + e.getMessage());
+                }
+            }
+        });
+
+        ENGINES.put("summa", new Engine() {
+            // Blocks of A and B are sent to the workers on every call
+            @Override
+            boolean supports(String layout, String vec, String prep) {
+                return layout.equals("flat") && prep.equals("per_call");
+            }
+
+            @Override
+            String blocking(Run r) {
+                int[] grid = summaGrid(r.threads);
+                return grid[0] + "x" + grid[1] + "@" + r.blockSize;
+            }
+
+            @Override
+            void run(Run r) throws InterruptedException {
+                Inputs in = r.in;
+                DenseMatrix C = r.denseResult();
+                // One JVM per worker for the whole configuration; every run scatters A and B afresh
+                try (SummaCluster cluster = SummaCluster.start(r.threads, in.m, in.k, in.n, r.vec, r.blockSize)) {
+                    r.iterate(() -> { }, () -> cluster.multiply(in.A, in.B, C, r.stats));
+                } catch (IOException | UncheckedIOException e) {
+                    System.out.println("[ERROR] SUMMA run failed: " + e.getMessage());
+                }
+            }
+        });
+
+        ENGINES.put("shm", new Engine() {
+            // A and B are rewritten into the shared files on every call
+            @Override
+            boolean supports(String layout, String vec, String prep) {
+                return layout.equals("flat") && prep.equals("per_call");
+            }
+
+            @Override
+            String blocking(Run r) {
+                return SHM_TILE + "@" + r.blockSize;
+            }
+
+            @Override
+            void run(Run r) throws InterruptedException {
+                Inputs in = r.in;
+                DenseMatrix C = r.denseResult();
+                // The workers map the segments once per configuration; every run rewrites A and B
+                try (SharedMemoryCluster cluster = SharedMemoryCluster.start(r.threads, in.m, in.k, in.n, r.vec, r.blockSize)) {
+                    r.iterate(() -> { }, () -> cluster.multiply(in.A, in.B, C, r.stats));
+                } catch (IOException | UncheckedIOException e) {
+                    System.out.println("[ERROR] Shared-memory run failed: " + e.getMessage());
+                }
+            }
+        });
+
+        ENGINES.put("chain", chainEngine(true));
+        ENGINES.put("chain_naive", chainEngine(false));
+    }
+
+    // Chains are evaluated with gemm straight from the loaded operands, in the planned order or
+    // left to right
+    private static Engine chainEngine(boolean planned) {
+        return new Engine() {
+            @Override
+            String blocking(Run r) {
+                return plan(r) + "@" + r.blockSize;
+            }
+
+            private ChainPlan plan(Run r) {
+                return planned ? planChain(r.in.dims) : ChainPlan.leftToRight(r.in.dims);
+            }
+
+            @Override
+            void run(Run r) throws InterruptedException {
+                ChainPlan plan = plan(r);
+                ChainWorkspace workspace = new ChainWorkspace();
+                DenseMatrix C = r.denseResult();
+                r.stats.flops = plan.flops;
+                // gemm stores the final product with beta = 0 and the workspace outlives the iterations,
+                // so after the first run a chain allocates nothing
+                r.iterate(() -> { }, () -> multiplyChain(r.in.chain, plan, C, workspace, r.vec, r.pool, r.blockSize));
+            }
+        };
+    }
+
+    // ---------------- BENCHMARK ITERATIONS ----------------
+    private static void runIterations(OperatingSystemMXBean osBean, int cores, Inputs in, String layout,
+                                      String engine, String vec, int threads, RunStats stats,
+                                      Runnable reset, Runnable multiply)
+            throws InterruptedException {
+        for (int iter = 1; iter <= WARMUP_ITERATIONS + REPETITIONS; iter++) {
+            boolean warmup = iter <= WARMUP_ITERATIONS;
+
+            System.gc();
+            Thread.sleep(50);
+            double allocMemMB = getUsedMemoryMB();
+
+            String runId = "run_" + UUID.randomUUID().toString().substring(0, 8);
+            String timestamp = DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(LocalDateTime.now());
+
+            AtomicLong peakMemoryBytes = new AtomicLong(0);
+            AtomicLong peakOffHeapBytes = new AtomicLong(getOffHeapMemoryBytes());
+            Thread sampler = new Thread(() -> {
+                while (!Thread.currentThread().isInterrupted()) {
+                    long used = Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+                    peakMemoryBytes.updateAndGet(p -> Math.max(p, used));
+                    long offHeap = getOffHeapMemoryBytes();
+                    peakOffHeapBytes.updateAndGet(p -> Math.max(p, offHeap));
+                    try { Thread.sleep(1); } catch (InterruptedException e) { break; }
+                }
+            });
+            sampler.setDaemon(true);
+            sampler.start();
+
+            long start, end;
+            double allocatedMB;
+            // A failing run must not leave the sampler polling through every later measurement
+            try {
+                reset.run();
+                stats.reset();
+                TILES_SKIPPED.reset();
+                long allocatedBefore = THREADS.getTotalThreadAllocatedBytes();
+                start = System.nanoTime();
+
+                multiply.run();
+
+                end = System.nanoTime();
+                allocatedMB = (THREADS.getTotalThreadAllocatedBytes() - allocatedBefore) / (1024.0 * 1024.0);
+            } finally {
+                sampler.interrupt();
+                sampler.join();
+            }
+
+            System.gc();
+            Thread.sleep(50);
+
+            double execMs = (end - start) / 1e6;
+            double gflops = (stats.flops > 0 ? stats.flops : 2.0 * in.m * in.k * in.n) / (end - start);
+            long tilesSkipped = TILES_SKIPPED.sum();
+            double peakMem = peakMemoryBytes.get() / (1024.0 * 1024.0);
+            double offHeapMem = peakOffHeapBytes.get() / (1024.0 * 1024.0);
+            double packMs = stats.packNanos.get() / 1e6;
+            double commMs = stats.commNanos.get() / 1e6;
+            double commMB = stats.commBytes.get() / (1024.0 * 1024.0);
+            // A cached operand is prepared once and shared by every iteration of the configuration
+            double prepMs = (stats.prepNanos.get() + stats.setupNanos) / 1e6;
+            double amortizedMs = execMs + stats.setupNanos / 1e6 / (WARMUP_ITERATIONS + REPETITIONS);
+            // Checked outside the timed region against the fp64 product
+            stats.maxAbsError = stats.error != null ? stats.error.getAsDouble() : Double.NaN;
+
+            long cpuTime = osBean.getProcessCpuTime();
+            long nanoTime = System.nanoTime();
+            long cpuDiff = cpuTime - prevCpuTime;
+            long timeDiff = nanoTime - prevNanoTime;
+            double cpuLoad = ((double) cpuDiff / timeDiff) * 100.0;
+            prevCpuTime = cpuTime;
+            prevNanoTime = nanoTime;
+
+            System.out.printf("[%s] size=%s layout=%s engine=%s prec=%s vec=%s epi=%s thr=%d blk=%s | time=%.2f ms | %.2f GFLOP/s | err=%.3g | skipped=%d | prep=%s %.2f ms | amortized=%.2f ms | pack=%.2f ms | comm=%.2f ms %.2f MB | alloc=%.2f MB | allocated=%.2f MB/%d steps | peak=%.2f MB | offheap=%.2f MB | cpu=%.1f%% | warmup=%b%n",
+                    runId, in.label(), layout, engine, stats.precision, vec, stats.epilogue, threads, stats.blocking, execMs, gflops, stats.maxAbsError, tilesSkipped, stats.preparation, prepMs, amortizedMs, packMs, commMs, commMB, allocMemMB, allocatedMB, stats.steps, peakMem, offHeapMem, cpuLoad, warmup);
+
+            saveCsv(OUTPUT_CSV, Arrays.asList(
+                    runId,
+                    in.isSquare() ? String.valueOf(in.size) : "",
+                    in.shape(),
+                    layout,
+                    engine,
+                    stats.precision,
+                    vec,
+                    stats.epilogue,
+                    String.valueOf(threads),
+                    String.valueOf(stats.workers),
+                    stats.blocking,
+                    String.format("%.3f", execMs),
+                    String.format("%.3f", gflops),
+                    String.format("%.6g", stats.maxAbsError),
+                    String.valueOf(tilesSkipped),
+                    stats.preparation,
+                    String.format("%.3f", prepMs),
+                    String.format("%.3f", amortizedMs),
+                    String.format("%.3f", packMs),
+                    String.format("%.3f", commMs),
+                    String.format("%.3f", commMB),
+                    String.format("%.3f", allocMemMB),
+                    String.format("%.3f", allocatedMB),
+                    String.valueOf(stats.steps),
+                    String.format("%.3f", peakMem),
+                    String.format("%.3f", offHeapMem),
+                    String.format("%.2f", cpuLoad),
+                    String.valueOf(cores),
+                    String.valueOf(iter),
+                    timestamp,
+                    warmup ? "1" : "0",
+                    "Pre-touched memory & CPU frequency stabilized"
+            ));
+
+            Thread.sleep(200);
+        }
+    }
+
+    // ---------------- AUTOTUNING ----------------
+    private static void autotune() throws Exception {
+        stabilizeCpuFrequency();
+
+        for (int size : MATRIX_SIZES) {
+            DenseMatrix A = loadMatrix("A", size);
+            DenseMatrix B = loadMatrix("B", size);
+            if (A == null || B == null) continue;
+            preTouchMatrix(A);
+            preTouchMatrix(B);
+            DenseMatrix C = new DenseMatrix(size);
+            preTouchMatrix(C);
+
+            for (String engine : ENGINE_OPTIONS) {
+                // Only these engines read tuned values: the recursive engine has none, and the sparse
+                // and split-K engines reuse the blocked engine's block size
+                if (!engine.equals("blocked") && !engine.equals("packed") && !engine.equals("strassen")) continue;
+                for (String vec : VECTORIZATION_OPTIONS) {
+                    if (!isSupported("flat", engine, "fp64", vec, "per_call")) continue;
+
+                    for (int threads : PARALLELIZATION_OPTIONS) {
+                        ForkJoinPool pool = threads > 1 ? new ForkJoinPool(threads) : null;
+                        String key = wisdomKey(engine, size, vec, threads);
+
+                        if (engine.equals("packed")) {
+                            int[] best = {PACK_MC, PACK_KC, PACK_NC};
+                            double bestMs = Double.MAX_VALUE;
+                            // Coordinate descent: KC (shared by both panels) first, then MC, then NC
+                            int[][] candidates = {TUNE_PACK_KC, TUNE_PACK_MC, TUNE_PACK_NC};
+                            int[] order = {1, 0, 2};
+                            for (int d = 0; d < order.length; d++) {
+                                int dim = order[d];
+                                int bestValue = best[dim];
+                                for (int value : candidates[d]) {
+                                    if (value > size && value != candidates[d][0]) continue;
+                                    int[] trial = best.clone();
+                                    trial[dim] = value;
+                                    PackedEngine packed = new PackedEngine(trial[0], trial[1], trial[2], vec.equals("fma"), new RunStats());
+                                    double ms = timeBest(C::clear, () -> packed.multiply(A, B, C, pool));
+                                    if (ms < bestMs) {
+                                        bestMs = ms;
+                                        bestValue = value;
+                                    }
+                                }
+                                best[dim] = bestValue;
+                            }
+                            WISDOM.setProperty(key, best[0] + "," + best[1] + "," + best[2]);
+                            System.out.printf("[TUNE] %s -> MC=%d KC=%d NC=%d (%.3f ms)%n", key, best[0], best[1], best[2], bestMs);
+                        } else if (engine.equals("strassen")) {
+                            PreparedB prepared = PreparedB.transposed(B);
+                            int best = STRASSEN_CROSSOVER;
+                            double bestMs = Double.MAX_VALUE;
+                            for (int crossover : TUNE_STRASSEN_CROSSOVERS) {
+                                if (crossover > size && crossover != TUNE_STRASSEN_CROSSOVERS[0]) continue;
+                                StrassenEngine strassen = new StrassenEngine(size, crossover, vec, pool);
+                                double ms = timeBest(C::clear, () -> strassen.multiply(A, prepared, C));
+                                if (ms < bestMs) {
+                                    bestMs = ms;
+                                    best = crossover;
+                                }
+                            }
+                            WISDOM.setProperty(key, String.valueOf(best));
+                            System.out.printf("[TUNE] %s -> crossover=%d (%.3f ms)%n", key, best, bestMs);
+                        } else {
+                            int best = 64;
+                            double bestMs = Double.MAX_VALUE;
+                            for (int blockSize : TUNE_BLOCK_SIZES) {
+                                if (blockSize > size && blockSize != TUNE_BLOCK_SIZES[0]) continue;
+                                double ms = timeBest(C::clear,
+                                        () -> multiplyMatrices(A, B, vec, pool != null, C, pool, blockSize));
+                                if (ms < bestMs) {
+                                    bestMs = ms;
+                                    best = blockSize;
+                                }
+                            }
+                            WISDOM.setProperty(key, String.valueOf(best));
+                            System.out.printf("[TUNE] %s -> blockSize=%d (%.3f ms)%n", key, best, bestMs);
+                        }
+
+                        if (pool != null) pool.shutdown();
+                    }
+                }
+            }
+            // Persist after every size so an interrupted tuning run keeps what it found
+            saveWisdom();
+        }
+    }
+
+    // Best-of-N wall time; the minimum is the least noisy estimate of what a configuration can do
+    private static double timeBest(Runnable reset, Runnable multiply) {
+        double best = Double.MAX_VALUE;
+        for (int run = 0; run < TUNE_WARMUP + TUNE_RUNS; run++) {
+            reset.run();
+            long start = System.nanoTime();
+            multiply.run();
+            double ms = (System.nanoTime() - start) / 1e6;
+            if (run >= TUNE_WARMUP) best = Math.min(best, ms);
+        }
+        return best;
+    }
+
+    private static String wisdomKey(String engine, int size, String vec, int threads) {
+        return engine + "." + size + "." + vec + "." + threads;
+    }
+
+    // Wisdom is keyed on square sizes; shapes (size -1) skip the lookup and take the defaults
+    private static int blockSizeFor(Inputs in, String vec, int threads) {
+        String value = in.size < 0 ? null : WISDOM.getProperty(wisdomKey("blocked", in.size, vec, threads));
+        return value != null ? Integer.parseInt(value) : 64;
+    }
+
+    private static int[] packBlockingFor(Inputs in, String vec, int threads) {
+        String value = in.size < 0 ? null : WISDOM.getProperty(wisdomKey("packed", in.size, vec, threads));
+        if (value == null) return new int[]{PACK_MC, PACK_KC, PACK_NC};
+        String[] parts = value.split(",");
+        return new int[]{Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), Integer.parseInt(parts[2])};
+    }
+
+    private static int strassenCrossoverFor(Inputs in, String vec, int threads) {
+        String value = in.size < 0 ? null : WISDOM.getProperty(wisdomKey("strassen", in.size, vec, threads));
+        return value != null ? Integer.parseInt(value) : STRASSEN_CROSSOVER;
+    }
+
+    // Tuned values only transfer to the same kind of machine, so the file is tagged with the host
+    private static String hostFingerprint() {
+        return System.getProperty("os.arch") + "/" + Runtime.getRuntime().availableProcessors() + "cpu/"
+                + DoubleVector.SPECIES_PREFERRED.vectorBitSize() + "bit";
+    }
+
+    private static void loadWisdom() {
+        File f = new File(WISDOM_FILE);
+        if (!f.exists()) return;
+        Properties loaded = new Properties();
+        try (Reader r = new FileReader(f)) {
+            loaded.load(r);
+        } catch (IOException e) {
+            System.out.println("[ERROR] Wisdom load failed: " + e.getMessage());
+            return;
+        }
+        if (!hostFingerprint().equals(loaded.getProperty("host"))) {
+            System.out.println("[WARN] Ignoring " + WISDOM_FILE + ": tuned on " + loaded.getProperty("host")
+                    + ", this host is " + hostFingerprint());
+            return;
+        }
+        WISDOM.putAll(loaded);
+        System.out.println("[OK] Loaded " + (WISDOM.size() - 1) + " tuned blockings from " + WISDOM_FILE);
+    }
+
+    private static void saveWisdom() {
+        WISDOM.setProperty("host", hostFingerprint());
+        try (Writer w = new FileWriter(WISDOM_FILE)) {
+            WISDOM.store(w, "Block sizes found by 'java Benchmark autotune'");
+        } catch (IOException e) {
+            System.out.println("[ERROR] Wisdom save failed: " + e.getMessage());
+        }
+    }
+
+    // ---------------- MEMORY PRE-TOUCH ----------------
+    private static void preTouchMatrix(DenseMatrix M) {
+        for (int i = 0; i < M.rows; i++)
+            for (int j = 0; j < M.cols; j++)
+                M.data[i * M.ld + j] += 0; // access each element to touch memory pages
+    }
+
+    private static void preTouchMatrix(JaggedMatrix M) {
+        for (int i = 0; i < M.size; i++)
+            for (int j = 0; j < M.size; j++)
+                M.data[i][j] += 0;
+    }
+
+    private static void preTouchMatrix(OffHeapMatrix M) {
+        for (long i = 0; i < M.size; i++)
+            for (long j = 0; j < M.size; j++) {
+                long idx = i * M.ld + j;
+                M.data.setAtIndex(ValueLayout.JAVA_DOUBLE, idx, M.data.getAtIndex(ValueLayout.JAVA_DOUBLE, idx));
+            }
+    }
+
+    // ---------------- CPU FREQUENCY STABILIZATION ----------------
+    private static void stabilizeCpuFrequency() {
+        // Placeholder: Actual implementation is OS-specific and may require root/admin
+        // For Linux: sudo cpupower frequency-set -g performance
+        // For Windows: set max/min CPU in Power Options to 100%
+        System.out.println("[INFO] CPU frequency stabilization requested. Ensure performance mode is set.");
+    }
+
+    // ---------------- MATRIX LOADING ----------------
+    public static DenseMatrix loadMatrix(String label, int size) throws IOException {
+        DenseMatrix m = loadMatrix(label + "_" + size);
+        if (m != null && (m.rows != size || m.cols != size)) {
+            System.out.println("[ERROR] Matrix '" + label + "_" + size + "' is " + m.rows + "x" + m.cols + ", expected square");
+            return null;
+        }
+        return m;
+    }
+
+    public static DenseMatrix loadMatrix(String name) throws IOException {
+        int[] dims = new int[2];
+        ByteBuffer buffer = readMatrixFile(name, dims);
+        if (buffer == null) return null;
+
+        DenseMatrix m = new DenseMatrix(dims[0], dims[1]);
+        for (int i = 0; i < m.rows; i++)
+            for (int j = 0; j < m.cols; j++)
+                m.data[i * m.ld + j] = buffer.getInt();
+
+        System.out.println("[OK] Loaded matrix '" + name + "' (" + m.rows + "x" + m.cols + ")");
+        return m;
+    }
+
+    // Keeps the generator's int32 elements as they are, without widening to double
+    public static IntMatrix loadIntMatrix(String label, int size) throws IOException {
+        int[] dims = new int[2];
+        ByteBuffer buffer = readMatrixFile(label + "_" + size, dims);
+        if (buffer == null || dims[0] != size || dims[1] != size) return null;
+
+        IntMatrix m = new IntMatrix(size);
+        for (int i = 0; i < size; i++)
+            for (int j = 0; j < size; j++)
+                m.data[i * m.ld + j] = buffer.getInt();
+        return m;
+    }
+
+    // Reads ./matrices/<name>.bin and returns its elements positioned at the first one, with the
+    // dimensions in dims. Files start with MATRIX_FILE_MAGIC, rows and cols (int32 LE each);
+    // files without that header are the original headerless square format.
+    private static ByteBuffer readMatrixFile(String name, int[] dims) throws IOException {
+        String filePath = MATRIX_DIR + "/" + name + ".bin";
+        if (!Files.exists(Paths.get(filePath))) return null;
+
+        byte[] bytes = Files.readAllBytes(Paths.get(filePath));
+        ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        if (bytes.length >= 12 && buffer.getInt(0) == MATRIX_FILE_MAGIC) {
+            dims[0] = buffer.getInt(4);
+            dims[1] = buffer.getInt(8);
+            buffer.position(12);
+        } else {
+            int n = (int) Math.round(Math.sqrt(bytes.length / (double) Integer.BYTES));
+            dims[0] = n;
+            dims[1] = n;
+        }
+        if ((long) dims[0] * dims[1] * Integer.BYTES != buffer.remaining())
+            throw new IOException("Matrix file " + filePath + " does not hold " + dims[0] + "x" + dims[1] + " int32 values");
+        return buffer;
+    }
+
+    // A (m x k) and B (k x n) of a shape sweep, with their fp64 reference product
+    private static Inputs loadInputs(int m, int k, int n) throws IOException {
+        DenseMatrix A = loadMatrix("A_" + m + "x" + k);
+        DenseMatrix B = loadMatrix("B_" + k + "x" + n);
+        if (A == null || B == null) return null;
+        if (A.rows != m || A.cols != k || B.rows != k || B.cols != n) {
+            System.out.println("[ERROR] Shape files do not match " + m + "x" + k + "x" + n + ", skipping");
+            return null;
+        }
+
+        preTouchMatrix(A);
+        preTouchMatrix(B);
+        A.occupancy = TileOccupancy.of(A);
+
+        Inputs in = new Inputs(A, B);
+        in.fileA = "A_" + m + "x" + k;
+        in.fileB = "B_" + k + "x" + n;
+        multiplyMatrices(A, B, "fma", false, in.reference, null, 64);
+        return in;
+    }
+
+    // Loads chain<c>_M1 .. chain<c>_Mq; the reference is the left-to-right product of the blocked engine
+    private static Inputs loadChain(int c, int[] dims) throws IOException {
+        DenseMatrix[] chain = new DenseMatrix[dims.length - 1];
+        for (int i = 0; i < chain.length; i++) {
+            chain[i] = loadMatrix("chain" + c + "_M" + (i + 1));
+            if (chain[i] == null) return null;
+            if (chain[i].rows != dims[i] || chain[i].cols != dims[i + 1]) {
+                System.out.println("[ERROR] Chain files do not match " + Arrays.toString(dims) + ", skipping");
+                return null;
+            }
+            preTouchMatrix(chain[i]);
+        }
+
+        Inputs in = new Inputs(chain);
+        DenseMatrix product = chain[0];
+        for (int i = 1; i < chain.length; i++) {
+            DenseMatrix next = i == chain.length - 1 ? in.reference : new DenseMatrix(product.rows, chain[i].cols);
+            multiplyMatrices(product, chain[i], "fma", false, next, null, 64);
+            product = next;
+        }
+
+        ChainPlan planned = planChain(dims), naive = ChainPlan.leftToRight(dims);
+        System.out.printf("[INFO] chain=%s plan=%s %.3f GFLOP, left to right=%s %.3f GFLOP (%.1fx)%n",
+                in.shape(), planned, planned.flops / 1e9, naive, naive.flops / 1e9, naive.flops / planned.flops);
+        return in;
+    }
+
+    private static Inputs loadInputs(int size) throws IOException {
+        DenseMatrix A = loadMatrix("A", size);
+        DenseMatrix B = loadMatrix("B", size);
+        if (A == null || B == null) return null;
+
+        // Pre-touch matrices to allocate pages and warm caches
+        preTouchMatrix(A);
+        preTouchMatrix(B);
+        A.occupancy = TileOccupancy.of(A);
+
+        Inputs in = new Inputs(A, B);
+        in.fileA = "A_" + size;
+        in.fileB = "B_" + size;
+        in.AI = loadIntMatrix("A", size);
+        in.BI = loadIntMatrix("B", size);
+        in.densityA = density(A);
+        in.densityB = density(B);
+        System.out.printf("[INFO] size=%d density A=%.3f B=%.3f -> sparse engine path: %s%n",
+                size, in.densityA, in.densityB,
+                csrPays(in) ? sparsePath(in) : "none (too dense for CSR, skipped)");
+        multiplyMatrices(A, B, "fma", false, in.reference, null, 64);
+        return in;
+    }
+
+    // Copies a flat matrix into the legacy row-per-array layout used for layout comparisons
+    private static JaggedMatrix toJagged(DenseMatrix M) {
+        JaggedMatrix J = new JaggedMatrix(M.size);
+        for (int i = 0; i < M.size; i++)
+            System.arraycopy(M.data, i * M.ld, J.data[i], 0, M.size);
+        return J;
+    }
+
+    // Copies a flat matrix into a native segment owned by the given arena
+    private static OffHeapMatrix toOffHeap(DenseMatrix M, Arena arena) {
+        OffHeapMatrix O = new OffHeapMatrix(M.size, arena);
+        for (int i = 0; i < M.size; i++)
+            MemorySegment.copy(M.data, i * M.ld, O.data, ValueLayout.JAVA_DOUBLE, (long) i * O.ld * Double.BYTES, M.size);
+        return O;
+    }
+
+    // ---------------- MATRIX MULTIPLICATION ----------------
+    private static void multiplyMatrices(DenseMatrix A, DenseMatrix B, String vec,
+                                         boolean parallel, DenseMatrix C, ForkJoinPool pool, int blockSize) {
+        multiplyMatrices(A, PreparedB.transposed(B), vec, parallel, C, pool, blockSize);
+    }
+
+    private static void multiplyMatrices(DenseMatrix A, PreparedB B, String vec,
+                                         boolean parallel, DenseMatrix C, ForkJoinPool pool, int blockSize) {
+        multiplyMatrices(A, B, vec, parallel, C, pool, blockSize, null);
+    }
+
+    // The epilogue, if any, runs on each C tile right after its last k-block while the tile is still in cache
+    private static void multiplyMatrices(DenseMatrix A, PreparedB B, String vec, boolean parallel,
+                                         DenseMatrix C, ForkJoinPool pool, int blockSize, Epilogue epilogue) {
+        if (B.transposed == null)
+            throw new IllegalArgumentException("B was prepared for the packed engine, not the blocked one");
+        DenseMatrix BT = B.transposed;
+        // A is m x k, BT is n x k and C is m x n
+        int m = A.rows, k = A.cols, n = BT.rows;
+        if (BT.cols != k || C.rows != m || C.cols != n)
+            throw new IllegalArgumentException("Cannot multiply " + m + "x" + k + " by " + BT.cols + "x" + n
+                    + " into " + C.rows + "x" + C.cols);
+        TileOccupancy occA = A.occupancy, occBT = BT.occupancy;
+
+        if (parallel && pool != null) {
+            int edge = tileEdge(m, n, pool.getParallelism(), blockSize);
+            int tileRows = (m + edge - 1) / edge, tileCols = (n + edge - 1) / edge;
+            int[] tiles = tileOrder(tileRows, tileCols, TILE_ORDER);
+            // Contiguous runs of the curve go to the same worker, so neighbouring tiles share A rows and BT rows
+            pool.submit(() ->
+                    IntStream.range(0, tiles.length).parallel().forEach(t -> {
+                        int ii = tiles[t] / tileCols * edge;
+                        int jj = tiles[t] % tileCols * edge;
+                        int iEnd = Math.min(ii + edge, m), jEnd = Math.min(jj + edge, n);
+                        for (int kk = 0; kk < k; kk += blockSize) {
+                            int kEnd = Math.min(kk + blockSize, k);
+                            if (!isZeroProduct(occA, occBT, ii, iEnd, jj, jEnd, kk, kEnd))
+                                multiplyTile(A, BT, C, ii, iEnd, jj, jEnd, kk, kEnd, vec);
+                        }
+                        if (epilogue != null) epilogue.apply(C, ii, iEnd, jj, jEnd);
+                    })
+            ).join();
+        } else {
+            for (int ii = 0; ii < m; ii += blockSize)
+                for (int jj = 0; jj < n; jj += blockSize) {
+                    int iEnd = Math.min(ii + blockSize, m), jEnd = Math.min(jj + blockSize, n);
+                    for (int kk = 0; kk < k; kk += blockSize)
+                        if (!isZeroProduct(occA, occBT, ii, iEnd, jj, jEnd, kk, Math.min(kk + blockSize, k)))
+                            multiplyBlock(A, BT, C, ii, jj, kk, blockSize, vec);
+                    if (epilogue != null) epilogue.apply(C, ii, iEnd, jj, jEnd);
+                }
+        }
+    }
+
+    // ---------------- EPILOGUES ----------------
+    // Element-wise operation on the finished tile C[i0:i1, j0:j1]; chained epilogues run stage by
+    // stage over the same tile
+    @FunctionalInterface
+    interface Epilogue {
+        void apply(DenseMatrix C, int i0, int i1, int j0, int j1);
+
+        default Epilogue andThen(Epilogue next) {
+            return (C, i0, i1, j0, j1) -> {
+                apply(C, i0, i1, j0, j1);
+                next.apply(C, i0, i1, j0, j1);
+            };
+        }
+    }
+
+    // C[i][j] += bias[j]
+    private static Epilogue biasEpilogue(double[] bias) {
+        return (C, i0, i1, j0, j1) -> {
+            for (int i = i0; i < i1; i++) {
+                int row = i * C.ld;
+                for (int j = j0; j < j1; j++)
+                    C.data[row + j] += bias[j];
+            }
+        };
+    }
+
+    // C[i][j] = min(max(C[i][j], lo), hi); relu is clamp(0, +inf)
+    private static Epilogue clampEpilogue(double lo, double hi) {
+        return (C, i0, i1, j0, j1) -> {
+            for (int i = i0; i < i1; i++) {
+                int row = i * C.ld;
+                for (int j = j0; j < j1; j++)
+                    C.data[row + j] = Math.min(Math.max(C.data[row + j], lo), hi);
+            }
+        };
+    }
+
+    // C[i][j] *= scale[i]
+    private static Epilogue rowScaleEpilogue(double[] scale) {
+        return (C, i0, i1, j0, j1) -> {
+            for (int i = i0; i < i1; i++) {
+                int row = i * C.ld;
+                double s = scale[i];
+                for (int j = j0; j < j1; j++)
+                    C.data[row + j] *= s;
+            }
+        };
+    }
+
+    // The production chain on an m x n result: bias add, relu and a rowwise scale
+    private static Epilogue benchmarkEpilogue(int m, int n) {
+        double[] bias = new double[n], scale = new double[m];
+        for (int j = 0; j < n; j++) bias[j] = (j % 7 - 3) * 8.0;
+        for (int i = 0; i < m; i++) scale[i] = 1.0 + (i % 5) * 0.25;
+        return biasEpilogue(bias).andThen(clampEpilogue(0.0, Double.POSITIVE_INFINITY)).andThen(rowScaleEpilogue(scale));
+    }
+
+    // Kernel calls skipped by the current run because one of their operand tiles was all zeros
+    private static final LongAdder TILES_SKIPPED = new LongAdder();
+
+    // A[i0:i1, k0:k1] * BT[j0:j1, k0:k1]^T adds nothing to C when either tile is known to be all
+    // zeros; matrices without an occupancy map are treated as dense
+    private static boolean isZeroProduct(TileOccupancy occA, TileOccupancy occBT,
+                                         int i0, int i1, int j0, int j1, int k0, int k1) {
+        boolean zero = occA != null && occA.isZero(i0, i1, k0, k1)
+                || occBT != null && occBT.isZero(j0, j1, k0, k1);
+        if (zero) TILES_SKIPPED.increment();
+        return zero;
+    }
+
+    // Largest tile edge (halving from blockSize) that gives every worker MIN_TILES_PER_WORKER
+    // tiles of the m x n result
+    private static int tileEdge(int m, int n, int workers, int blockSize) {
+        int edge = blockSize;
+        while (edge / 2 >= MIN_TILE_EDGE && tileCount(m, n, edge) < workers * MIN_TILES_PER_WORKER)
+            edge /= 2;
+        return edge;
+    }
+
+    // Workers worth starting for an m x n result: no more than the tile grid can keep busy
+    private static int tileWorkers(int m, int n, int threads, int blockSize) {
+        long tiles = tileCount(m, n, tileEdge(m, n, threads, blockSize));
+        return (int) Math.max(1, Math.min(threads, tiles / MIN_TILES_PER_WORKER));
+    }
+
+    private static long tileCount(int m, int n, int edge) {
+        return (long) ((m + edge - 1) / edge) * ((n + edge - 1) / edge);
+    }
+
+    // Tile orders by "order:rows:cols"; the grids of a run repeat for every multiply
+    private static final Map<String, int[]> TILE_ORDERS = new ConcurrentHashMap<>();
+
+    // Tile indices (row * cols + col) of a rows x cols grid in the requested traversal order,
+    // shared between callers and never written. Morton and Hilbert curves cover the grid as
+    // consecutive squares of side min(rows, cols) along its long dimension, each walked on its
+    // enclosing power-of-two square and clipped, so a tall or wide grid costs at most about
+    // four curve points per tile. A grid one tile wide has nothing to reorder.
+    private static int[] tileOrder(int rows, int cols, String order) {
+        return TILE_ORDERS.computeIfAbsent(order + ":" + rows + ":" + cols, key -> buildTileOrder(rows, cols, order));
+    }
+
+    private static int[] buildTileOrder(int rows, int cols, String order) {
+        int[] tiles = new int[rows * cols];
+        int block = Math.min(rows, cols);
+        if (order.equals("row") || block <= 1) {
+            for (int t = 0; t < tiles.length; t++) tiles[t] = t;
+            return tiles;
+        }
+        int side = Integer.highestOneBit(block - 1) << 1;
+        boolean tall = rows > cols;
+        int[] rc = new int[2];
+        int count = 0;
+        for (int start = 0; start < Math.max(rows, cols); start += block) {
+            int r0 = tall ? start : 0, c0 = tall ? 0 : start;
+            for (int d = 0; d < side * side; d++) {
+                if (order.equals("morton")) {
+                    rc[0] = compactBits(d >>> 1);
+                    rc[1] = compactBits(d);
+                } else {
+                    hilbertToGrid(side, d, rc);
+                }
+                int r = r0 + rc[0], c = c0 + rc[1];
+                if (rc[0] < block && rc[1] < block && r < rows && c < cols) tiles[count++] = r * cols + c;
+            }
+        }
+        return tiles;
+    }
+
+    // Keeps the even bits of a Morton code
+    private static int compactBits(int x) {
+        x &= 0x55555555;
+        x = (x | (x >>> 1)) & 0x33333333;
+        x = (x | (x >>> 2)) & 0x0F0F0F0F;
+        x = (x | (x >>> 4)) & 0x00FF00FF;
+        x = (x | (x >>> 8)) & 0x0000FFFF;
+        return x;
+    }
+
+    // Position d along the Hilbert curve of a side x side grid (side a power of two), as
+    // (row, col) in rc
+    private static void hilbertToGrid(int side, int d, int[] rc) {
+        int r = 0, c = 0;
+        for (int s = 1; s < side; s <<= 1) {
+            int rx = 1 & (d >>> 1);
+            int ry = 1 & (d ^ rx);
+            if (ry == 0) {
+                if (rx == 1) {
+                    r = s - 1 - r;
+                    c = s - 1 - c;
+                }
+                int tmp = r;
+                r = c;
+                c = tmp;
+            }
+            c += s * rx;
+            r += s * ry;
+            d >>>= 2;
+        }
+        rc[0] = r;
+        rc[1] = c;
+    }
+
+    private static void multiplyBlock(DenseMatrix A, DenseMatrix BT, DenseMatrix C,
+                                      int ii, int jj, int kk, int blockSize, String vec) {
+        multiplyTile(A, BT, C, ii, Math.min(ii + blockSize, A.rows), jj, Math.min(jj + blockSize, BT.rows),
+                kk, Math.min(kk + blockSize, A.cols), vec);
+    }
+
+    // C[i0:i1, j0:j1] += A[i0:i1, k0:k1] * BT[j0:j1, k0:k1]^T with the selected kernel
+    private static void multiplyTile(DenseMatrix A, DenseMatrix BT, DenseMatrix C,
+                                     int i0, int i1, int j0, int j1, int k0, int k1, String vec) {
+        if (vec.equals("fma"))
+            multiplyTileFma(A, BT, C, i0, i1, j0, j1, k0, k1);
+        else
+            multiplyTile(A, BT, C, i0, i1, j0, j1, k0, k1, vec.equals("simd"));
+    }
+
+    private static void multiplyTile(DenseMatrix A, DenseMatrix BT, DenseMatrix C,
+                                     int i0, int i1, int j0, int j1, int kk, int kEnd, boolean vectorize) {
+        int vecLen = DoubleVector.SPECIES_PREFERRED.length();
+        double[] a = A.data, bt = BT.data, c = C.data;
+
+        for (int i = i0; i < i1; i++) {
+            int aRow = i * A.ld;
+            for (int j = j0; j < j1; j++) {
+                int bRow = j * BT.ld;
+                double sum = 0;
+                if (vectorize) {
+                    int k;
+                    for (k = kk; k <= kEnd - vecLen; k += vecLen) {
+                        DoubleVector va = DoubleVector.fromArray(DoubleVector.SPECIES_PREFERRED, a, aRow + k);
+                        DoubleVector vb = DoubleVector.fromArray(DoubleVector.SPECIES_PREFERRED, bt, bRow + k);
+                        sum += va.mul(vb).reduceLanes(VectorOperators.ADD);
+                    }
+                    for (; k < kEnd; k++)
+                        sum += a[aRow + k] * bt[bRow + k];
+                } else {
+                    for (int k = kk; k < kEnd; k++)
+                        sum += a[aRow + k] * bt[bRow + k];
+                }
+                c[i * C.ld + j] += sum;
+            }
+        }
+    }
+
+    // Computes an FMA_MR x FMA_NR tile of C per step, keeping one lanewise accumulator per
+    // output element and reducing each accumulator once after the whole k range
+    private static void multiplyTileFma(DenseMatrix A, DenseMatrix BT, DenseMatrix C,
+                                        int ii, int iEnd, int jj, int jEnd, int kk, int kEnd) {
+        multiplyTileFma(A.data, ii * A.ld, A.ld, BT.data, jj * BT.ld, BT.ld, C.data, ii * C.ld + jj, C.ld,
+                iEnd - ii, jEnd - jj, kk, kEnd, 1.0, 1.0);
+    }
+
+    // Sets C(r, j) = scale * C(r, j) + alpha * (A * BT^T)(r, j) over rows x cols and k in
+    // [kk, kEnd), where row r of A starts at aBase + r * lda, row j of BT at bBase + j * ldb and
+    // C(r, j) is at cBase + r * ldc + j. A scale of 0 never reads C.
+    private static void multiplyTileFma(double[] a, int aBase, int lda, double[] bt, int bBase, int ldb,
+                                        double[] c, int cBase, int ldc, int rows, int cols, int kk, int kEnd,
+                                        double alpha, double scale) {
+        VectorSpecies<Double> species = DoubleVector.SPECIES_PREFERRED;
+        int vecLen = species.length();
+        int kVecEnd = kk + (kEnd - kk) / vecLen * vecLen;
+
+        int r = 0;
+        for (; r <= rows - FMA_MR; r += FMA_MR) {
+            int a0 = aBase + r * lda, a1 = a0 + lda, a2 = a1 + lda, a3 = a2 + lda;
+            int j = 0;
+            for (; j <= cols - FMA_NR; j += FMA_NR) {
+                int b0 = bBase + j * ldb, b1 = b0 + ldb;
+                DoubleVector c00 = DoubleVector.zero(species), c01 = DoubleVector.zero(species);
+                DoubleVector c10 = DoubleVector.zero(species), c11 = DoubleVector.zero(species);
+                DoubleVector c20 = DoubleVector.zero(species), c21 = DoubleVector.zero(species);
+                DoubleVector c30 = DoubleVector.zero(species), c31 = DoubleVector.zero(species);
+
+                for (int k = kk; k < kVecEnd; k += vecLen) {
+                    DoubleVector vb0 = DoubleVector.fromArray(species, bt, b0 + k);
+                    DoubleVector vb1 = DoubleVector.fromArray(species, bt, b1 + k);
+                    DoubleVector va = DoubleVector.fromArray(species, a, a0 + k);
+                    c00 = va.fma(vb0, c00);
+                    c01 = va.fma(vb1, c01);
+                    va = DoubleVector.fromArray(species, a, a1 + k);
+                    c10 = va.fma(vb0, c10);
+                    c11 = va.fma(vb1, c11);
+                    va = DoubleVector.fromArray(species, a, a2 + k);
+                    c20 = va.fma(vb0, c20);
+                    c21 = va.fma(vb1, c21);
+                    va = DoubleVector.fromArray(species, a, a3 + k);
+                    c30 = va.fma(vb0, c30);
+                    c31 = va.fma(vb1, c31);
+                }
+
+                double s00 = c00.reduceLanes(VectorOperators.ADD), s01 = c01.reduceLanes(VectorOperators.ADD);
+                double s10 = c10.reduceLanes(VectorOperators.ADD), s11 = c11.reduceLanes(VectorOperators.ADD);
+                double s20 = c20.reduceLanes(VectorOperators.ADD), s21 = c21.reduceLanes(VectorOperators.ADD);
+                double s30 = c30.reduceLanes(VectorOperators.ADD), s31 = c31.reduceLanes(VectorOperators.ADD);
+                for (int k = kVecEnd; k < kEnd; k++) {
+                    s00 += a[a0 + k] * bt[b0 + k];
+                    s01 += a[a0 + k] * bt[b1 + k];
+                    s10 += a[a1 + k] * bt[b0 + k];
+                    s11 += a[a1 + k] * bt[b1 + k];
+                    s20 += a[a2 + k] * bt[b0 + k];
+                    s21 += a[a2 + k] * bt[b1 + k];
+                    s30 += a[a3 + k] * bt[b0 + k];
+                    s31 += a[a3 + k] * bt[b1 + k];
+                }
+
+                int c0 = cBase + r * ldc + j;
+                storeScaled(c, c0, s00, alpha, scale);
+                storeScaled(c, c0 + 1, s01, alpha, scale);
+                storeScaled(c, c0 + ldc, s10, alpha, scale);
+                storeScaled(c, c0 + ldc + 1, s11, alpha, scale);
+                storeScaled(c, c0 + 2 * ldc, s20, alpha, scale);
+                storeScaled(c, c0 + 2 * ldc + 1, s21, alpha, scale);
+                storeScaled(c, c0 + 3 * ldc, s30, alpha, scale);
+                storeScaled(c, c0 + 3 * ldc + 1, s31, alpha, scale);
+            }
+            // Columns left over when the block width is not a multiple of FMA_NR
+            for (; j < cols; j++)
+                for (int q = 0; q < FMA_MR; q++)
+                    storeScaled(c, cBase + (r + q) * ldc + j,
+                            dotFma(a, aBase + (r + q) * lda, bt, bBase + j * ldb, kk, kEnd), alpha, scale);
+        }
+        // Rows left over when the block height is not a multiple of FMA_MR
+        for (; r < rows; r++)
+            for (int j = 0; j < cols; j++)
+                storeScaled(c, cBase + r * ldc + j, dotFma(a, aBase + r * lda, bt, bBase + j * ldb, kk, kEnd),
+                        alpha, scale);
+    }
+
+    // alpha = scale = 1 is the plain c[index] += sum of the blocked engines
+    private static void storeScaled(double[] c, int index, double sum, double alpha, double scale) {
+        c[index] = scale == 0 ? alpha * sum : scale * c[index] + alpha * sum;
+    }
+
+    private static double dotFma(double[] a, int aRow, double[] bt, int bRow, int kStart, int kEnd) {
+        VectorSpecies<Double> species = DoubleVector.SPECIES_PREFERRED;
+        DoubleVector acc = DoubleVector.zero(species);
+        int k = kStart;
+        for (; k <= kEnd - species.length(); k += species.length())
+            acc = DoubleVector.fromArray(species, a, aRow + k).fma(DoubleVector.fromArray(species, bt, bRow + k), acc);
+        double sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; k < kEnd; k++)
+            sum += a[aRow + k] * bt[bRow + k];
+        return sum;
+    }
+
+    private static DenseMatrix transposeMatrix(DenseMatrix M) {
+        DenseMatrix T = new DenseMatrix(M.cols, M.rows);
+        for (int i = 0; i < M.rows; i++)
+            for (int j = 0; j < M.cols; j++)
+                T.data[j * T.ld + i] = M.data[i * M.ld + j];
+        return T;
+    }
+
+    // ---------------- GEMM (C = alpha * op(A) * op(B) + beta * C) ----------------
+    // Per-thread copy of an op(A) tile panel when A is transposed
+    private static final ThreadLocal<double[][]> GEMM_PANEL = ThreadLocal.withInitial(() -> new double[1][0]);
+
+    // BLAS-style multiply on the blocked tiling. op(X) is X, or X^T when its trans flag is set:
+    // A is m x k (k x m with transA) and B is k x n (n x k with transB). B^T is read in place,
+    // but A^T is not: every (tile, k-block) step copies its op(A) panel into per-thread scratch,
+    // inside the timed multiply, so the kernels stay unit-stride. The first k-block of each tile
+    // folds beta * C into its result, and beta == 0 never reads C, so C needs no clearing.
+    private static void gemm(boolean transA, boolean transB, double alpha, DenseMatrix A, DenseMatrix B,
+                             double beta, DenseMatrix C, String vec, ForkJoinPool pool, int blockSize) {
+        int m = transA ? A.cols : A.rows, k = transA ? A.rows : A.cols;
+        int n = transB ? B.rows : B.cols;
+        if ((transB ? B.cols : B.rows) != k || C.rows != m || C.cols != n)
+            throw new IllegalArgumentException("Cannot multiply " + m + "x" + k + " by " + (transB ? B.cols : B.rows)
+                    + "x" + n + " into " + C.rows + "x" + C.cols);
+        if (k == 0) {
+            for (int i = 0; i < m; i++)
+                for (int j = 0; j < n; j++)
+                    C.data[i * C.ld + j] = beta == 0 ? 0 : beta * C.data[i * C.ld + j];
+            return;
+        }
+
+        // B^T rows are contiguous in k, so dot products; plain B rows are contiguous in j, so row updates
+        forEachTile(m, n, k, pool, blockSize, (i0, i1, j0, j1, k0, k1) -> {
+            double scale = k0 == 0 ? beta : 1.0;
+            if (transB)
+                gemmTileDot(transA, alpha, A, B, scale, C, i0, i1, j0, j1, k0, k1, vec);
+            else
+                gemmTileAxpy(transA, alpha, A, B, scale, C, i0, i1, j0, j1, k0, k1, vec);
+        });
+    }
+
+    // C[i][j] = scale * C[i][j] + alpha * op(A)[i, k0:k1] . B[j, k0:k1], without reading C when scale is 0
+    private static void gemmTileDot(boolean transA, double alpha, DenseMatrix A, DenseMatrix B, double scale,
+                                    DenseMatrix C, int i0, int i1, int j0, int j1, int k0, int k1, String vec) {
+        int kLen = k1 - k0;
+        double[] a = A.data;
+        int aBase = i0 * A.ld + k0, aLd = A.ld;
+        if (transA) {
+            // op(A) rows are A columns; copy the tile's panel so the dot products stay unit-stride
+            double[][] panel = GEMM_PANEL.get();
+            if (panel[0].length < (i1 - i0) * kLen) panel[0] = new double[(i1 - i0) * kLen];
+            a = panel[0];
+            for (int kk = k0; kk < k1; kk++)
+                for (int i = i0; i < i1; i++)
+                    a[(i - i0) * kLen + kk - k0] = A.data[kk * A.ld + i];
+            aBase = 0;
+            aLd = kLen;
+        }
+        if (vec.equals("fma")) {
+            // The blocked engine's register-tiled micro-kernel, so gemm/fma compares with blocked/fma
+            multiplyTileFma(a, aBase, aLd, B.data, j0 * B.ld + k0, B.ld, C.data, i0 * C.ld + j0, C.ld,
+                    i1 - i0, j1 - j0, 0, kLen, alpha, scale);
+            return;
+        }
+        boolean simd = vec.equals("simd");
+        VectorSpecies<Double> species = DoubleVector.SPECIES_PREFERRED;
+
+        for (int i = i0; i < i1; i++) {
+            int aRow = aBase + (i - i0) * aLd;
+            for (int j = j0; j < j1; j++) {
+                int bRow = j * B.ld + k0;
+                double sum = 0;
+                int k = 0;
+                if (simd) {
+                    for (; k <= kLen - species.length(); k += species.length())
+                        sum += DoubleVector.fromArray(species, a, aRow + k)
+                                .mul(DoubleVector.fromArray(species, B.data, bRow + k))
+                                .reduceLanes(VectorOperators.ADD);
+                }
+                for (; k < kLen; k++)
+                    sum += a[aRow + k] * B.data[bRow + k];
+                int c = i * C.ld + j;
+                C.data[c] = scale == 0 ? alpha * sum : scale * C.data[c] + alpha * sum;
+            }
+        }
+    }
+
+    // C[i, j0:j1] = scale * C[i, j0:j1] + sum over k of (alpha * op(A)[i][k]) * B[k, j0:j1]; the
+    // first k of the block applies the scale, so beta costs no separate pass over C
+    private static void gemmTileAxpy(boolean transA, double alpha, DenseMatrix A, DenseMatrix B, double scale,
+                                     DenseMatrix C, int i0, int i1, int j0, int j1, int k0, int k1, String vec) {
+        boolean vectorize = !vec.equals("none"), fma = vec.equals("fma");
+        VectorSpecies<Double> species = DoubleVector.SPECIES_PREFERRED;
+        double[] b = B.data, c = C.data;
+
+        for (int i = i0; i < i1; i++) {
+            int cRow = i * C.ld;
+            for (int k = k0; k < k1; k++) {
+                double aik = alpha * (transA ? A.data[k * A.ld + i] : A.data[i * A.ld + k]);
+                int bRow = k * B.ld;
+                double s = k == k0 ? scale : 1.0;
+                int j = j0;
+                if (vectorize) {
+                    DoubleVector va = DoubleVector.broadcast(species, aik);
+                    for (; j <= j1 - species.length(); j += species.length()) {
+                        DoubleVector vb = DoubleVector.fromArray(species, b, bRow + j);
+                        DoubleVector vc;
+                        if (s == 0) {
+                            vc = vb.mul(va);
+                        } else {
+                            vc = DoubleVector.fromArray(species, c, cRow + j);
+                            if (s != 1) vc = vc.mul(s);
+                            vc = fma ? vb.fma(va, vc) : vb.mul(va).add(vc);
+                        }
+                        vc.intoArray(c, cRow + j);
+                    }
+                }
+                for (; j < j1; j++)
+                    c[cRow + j] = s == 0 ? aik * b[bRow + j] : s * c[cRow + j] + aik * b[bRow + j];
+            }
+        }
+    }
+
+    // ---------------- OUT-OF-CORE ENGINE ----------------
+    // Row-major little-endian fp64 matrix in a file, mapped instead of read: pages come and go
+    // with the OS page cache, so its size is bounded by the disk rather than the heap
+    static class MappedMatrix {
+        final int rows, cols;
+        final MemorySegment data;
+
+        MappedMatrix(Path file, int rows, int cols, Arena arena) throws IOException {
+            this.rows = rows;
+            this.cols = cols;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                data = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) rows * cols * Double.BYTES, arena);
+            }
+        }
+
+        // A rows x cols matrix at the start of an existing mapping
+        MappedMatrix(MemorySegment mapping, int rows, int cols) {
+            this.rows = rows;
+            this.cols = cols;
+            data = mapping.asSlice(0, (long) rows * cols * Double.BYTES);
+        }
+
+        long offset(int i, int j) {
+            return ((long) i * cols + j) * Double.BYTES;
+        }
+
+        long bytes() {
+            return data.byteSize();
+        }
+
+        // Copies the tile [i0, i0 + r) x [j0, j0 + c) into buffer with leading dimension c
+        void readTile(int i0, int j0, int r, int c, double[] buffer) {
+            for (int i = 0; i < r; i++)
+                MemorySegment.copy(data, OOC_DOUBLE, offset(i0 + i, j0), buffer, i * c, c);
+        }
+
+        void writeTile(int i0, int j0, int r, int c, double[] buffer) {
+            for (int i = 0; i < r; i++)
+                MemorySegment.copy(buffer, i * c, data, OOC_DOUBLE, offset(i0 + i, j0), c);
+        }
+
+        // Writes rows [i0, i1) back to the file and drops them from memory
+        void evictRows(int i0, int i1, boolean dirty) {
+            MemorySegment band = data.asSlice(offset(i0, 0), (long) (i1 - i0) * cols * Double.BYTES);
+            if (dirty) band.force();
+            band.unload();
+        }
+    }
+
+    // Streams an int32 matrix file into a mapped fp64 file chunk by chunk, so neither has to fit in the heap
+    private static MappedMatrix toMapped(String name, Path target, Arena arena) throws IOException {
+        Path source = Paths.get(MATRIX_DIR, name + ".bin");
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+            long bytes = in.size(), pos = 0;
+            ByteBuffer header = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+            in.read(header, 0);
+            int rows, cols;
+            if (bytes >= 12 && header.getInt(0) == MATRIX_FILE_MAGIC) {
+                rows = header.getInt(4);
+                cols = header.getInt(8);
+                pos = 12;
+            } else {
+                rows = cols = (int) Math.round(Math.sqrt(bytes / (double) Integer.BYTES));
+            }
+            if ((long) rows * cols * Integer.BYTES != bytes - pos)
+                throw new IOException("Matrix file " + source + " does not hold " + rows + "x" + cols + " int32 values");
+
+            MappedMatrix M = new MappedMatrix(target, rows, cols, arena);
+            ByteBuffer chunk = ByteBuffer.allocate(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+            long out = 0;
+            while (pos < bytes) {
+                int read = in.read(chunk, pos);
+                if (read < 0) break;
+                pos += read;
+                chunk.flip();
+                while (chunk.remaining() >= Integer.BYTES) {
+                    M.data.set(OOC_DOUBLE, out, chunk.getInt());
+                    out += Double.BYTES;
+                }
+                chunk.compact();
+            }
+            M.data.force();
+            return M;
+        }
+    }
+
+    // C = A * B over mapped files, one (ii, jj, kk) tile step at a time. The heap holds two
+    // A/B tile pairs and one C tile: while gemm works on one pair, a single prefetch thread
+    // copies the next step's tiles out of the mappings into the other. C tiles are written
+    // back after their last k-step, and A and C row bands are evicted once finished, so only
+    // B stays resident beyond the page cache's own choice.
+    static class OutOfCoreEngine implements AutoCloseable {
+        private final int tile, blockSize;
+        private final String vec;
+        private final ForkJoinPool pool;
+        private final ExecutorService prefetcher;
+        private final double[][] aTiles, bTiles;
+        private final double[] cTile;
+
+        OutOfCoreEngine(int tile, String vec, ForkJoinPool pool, int blockSize) {
+            this.tile = tile;
+            this.vec = vec;
+            this.pool = pool;
+            this.blockSize = blockSize;
+            prefetcher = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "ooc-prefetch");
+                t.setDaemon(true);
+                return t;
+            });
+            aTiles = new double[][]{new double[tile * tile], new double[tile * tile]};
+            bTiles = new double[][]{new double[tile * tile], new double[tile * tile]};
+            cTile = new double[tile * tile];
+        }
+
+        long workingSetBytes() {
+            return 5L * tile * tile * Double.BYTES;
+        }
+
+        void multiply(MappedMatrix A, MappedMatrix B, MappedMatrix C) {
+            int m = A.rows, k = A.cols, n = B.cols;
+            if (B.rows != k || C.rows != m || C.cols != n)
+                throw new IllegalArgumentException("Cannot multiply " + m + "x" + k + " by " + B.rows + "x" + n
+                        + " into " + C.rows + "x" + C.cols);
+            int tm = (m + tile - 1) / tile, tn = (n + tile - 1) / tile, tk = (k + tile - 1) / tile;
+            int steps = tm * tn * tk;
+
+            Future<?> pending = prefetch(A, B, 0, tn, tk, 0);
+            for (int s = 0; s < steps; s++) {
+                await(pending);
+                if (s + 1 < steps) pending = prefetch(A, B, s + 1, tn, tk, (s + 1) & 1);
+
+                int ti = s / (tn * tk), tj = s / tk % tn, tl = s % tk;
+                int i0 = ti * tile, j0 = tj * tile, k0 = tl * tile;
+                int r = Math.min(tile, m - i0), c = Math.min(tile, n - j0), d = Math.min(tile, k - k0);
+                DenseMatrix a = new DenseMatrix(r, d, aTiles[s & 1]);
+                DenseMatrix b = new DenseMatrix(d, c, bTiles[s & 1]);
+                DenseMatrix ct = new DenseMatrix(r, c, cTile);
+                // The first k-step stores into the C tile, later ones accumulate
+                gemm(false, false, 1.0, a, b, tl == 0 ? 0.0 : 1.0, ct, vec, pool, blockSize);
+
+                if (tl == tk - 1) {
+                    C.writeTile(i0, j0, r, c, cTile);
+                    if (tj == tn - 1) {
+                        A.evictRows(i0, i0 + r, false);
+                        C.evictRows(i0, i0 + r, true);
+                    }
+                }
+            }
+        }
+
+        // Loads the A and B tiles of step s into buffer set slot
+        private Future<?> prefetch(MappedMatrix A, MappedMatrix B, int s, int tn, int tk, int slot) {
+            return prefetcher.submit(() -> {
+                int i0 = s / (tn * tk) * tile, j0 = s / tk % tn * tile, k0 = s % tk * tile;
+                int r = Math.min(tile, A.rows - i0), c = Math.min(tile, B.cols - j0), d = Math.min(tile, A.cols - k0);
+                A.readTile(i0, k0, r, d, aTiles[slot]);
+                B.readTile(k0, j0, d, c, bTiles[slot]);
+            });
+        }
+
+        private static void await(Future<?> pending) {
+            try {
+                pending.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for a tile prefetch", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Tile prefetch failed", e.getCause());
+            }
+        }
+
+        @Override
+        public void close() {
+            prefetcher.shutdownNow();
+        }
+    }
+
+    // ---------------- DISTRIBUTED ENGINE (SUMMA over localhost sockets) ----------------
+    // C = A * B on a pr x pc grid of worker JVMs. Worker (I, J) owns the C block of row band I
+    // and column band J. k is cut into lcm(pr, pc) panels: A panel K of row band I lives on
+    // (I, K % pc) and B panel K of column band J on (K % pr, J). At step K the owners send
+    // their panels along their grid row and column, and every worker adds A(I, K) * B(K, J)
+    // to its block. The coordinator only scatters the owned panels and gathers C.
+
+    // Frame tags of the coordinator and peer connections
+    private static final int MSG_HELLO = 1, MSG_SETUP = 2, MSG_RUN = 3, MSG_PANEL = 4, MSG_RESULT = 5, MSG_STOP = 6;
+
+    // Most nearly square pr x pc grid with pr * pc == processes
+    private static int[] summaGrid(int processes) {
+        int pr = (int) Math.sqrt(processes);
+        while (processes % pr != 0) pr--;
+        return new int[]{pr, processes / pr};
+    }
+
+    private static int gcd(int a, int b) {
+        return b == 0 ? a : gcd(b, a % b);
+    }
+
+    // First index of part p when extent is cut into parts nearly equal pieces
+    private static int band(int extent, int parts, int p) {
+        return (int) ((long) extent * p / parts);
+    }
+
+    // Blocking framed I/O on a socket channel; doubles go through a per-thread direct buffer
+    static final class Wire {
+        private static final ThreadLocal<ByteBuffer> BUFFER =
+                ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN));
+
+        static void writeInts(SocketChannel ch, int... values) throws IOException {
+            ByteBuffer b = ByteBuffer.allocate(values.length * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            for (int v : values) b.putInt(v);
+            b.flip();
+            while (b.hasRemaining()) ch.write(b);
+        }
+
+        static void writeLongs(SocketChannel ch, long... values) throws IOException {
+            ByteBuffer b = ByteBuffer.allocate(values.length * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            for (long v : values) b.putLong(v);
+            b.flip();
+            while (b.hasRemaining()) ch.write(b);
+        }
+
+        static int[] readInts(SocketChannel ch, int count) throws IOException {
+            ByteBuffer b = readFully(ch, ByteBuffer.allocate(count * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN));
+            int[] values = new int[count];
+            for (int i = 0; i < count; i++) values[i] = b.getInt();
+            return values;
+        }
+
+        static long[] readLongs(SocketChannel ch, int count) throws IOException {
+            ByteBuffer b = readFully(ch, ByteBuffer.allocate(count * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN));
+            long[] values = new long[count];
+            for (int i = 0; i < count; i++) values[i] = b.getLong();
+            return values;
+        }
+
+        static int expect(SocketChannel ch, int tag) throws IOException {
+            int got = readInts(ch, 1)[0];
+            if (got != tag) throw new IOException("Expected frame " + tag + " but received " + got);
+            return got;
+        }
+
+        private static ByteBuffer readFully(SocketChannel ch, ByteBuffer b) throws IOException {
+            while (b.hasRemaining())
+                if (ch.read(b) < 0) throw new EOFException("Connection closed by peer");
+            return b.flip();
+        }
+
+        // M[i0:i1, j0:j1] row by row; returns the bytes written
+        static long writeBlock(SocketChannel ch, DenseMatrix M, int i0, int i1, int j0, int j1) throws IOException {
+            ByteBuffer b = BUFFER.get();
+            int perBuffer = b.capacity() / Double.BYTES;
+            for (int i = i0; i < i1; i++)
+                for (int j = j0; j < j1; j += perBuffer) {
+                    int len = Math.min(perBuffer, j1 - j);
+                    b.clear();
+                    b.asDoubleBuffer().put(M.data, i * M.ld + j, len);
+                    b.limit(len * Double.BYTES);
+                    while (b.hasRemaining()) ch.write(b);
+                }
+            return (long) (i1 - i0) * (j1 - j0) * Double.BYTES;
+        }
+
+        // Fills M[i0:i1, j0:j1] from the stream; returns the bytes read
+        static long readBlock(SocketChannel ch, DenseMatrix M, int i0, int i1, int j0, int j1) throws IOException {
+            ByteBuffer b = BUFFER.get();
+            int perBuffer = b.capacity() / Double.BYTES;
+            for (int i = i0; i < i1; i++)
+                for (int j = j0; j < j1; j += perBuffer) {
+                    int len = Math.min(perBuffer, j1 - j);
+                    b.clear();
+                    b.limit(len * Double.BYTES);
+                    readFully(ch, b);
+                    b.asDoubleBuffer().get(M.data, i * M.ld + j, len);
+                }
+            return (long) (i1 - i0) * (j1 - j0) * Double.BYTES;
+        }
+
+        // Blocking accept that gives up after timeoutMs
+        static SocketChannel accept(ServerSocketChannel server, long timeoutMs) throws IOException {
+            server.configureBlocking(false);
+            long deadline = System.currentTimeMillis() + timeoutMs;
+            while (System.currentTimeMillis() < deadline) {
+                SocketChannel ch = server.accept();
+                if (ch != null) {
+                    ch.configureBlocking(true);
+                    ch.socket().setTcpNoDelay(true);
+                    return ch;
+                }
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            throw new IOException("No connection within " + timeoutMs + " ms");
+        }
+
+        static SocketChannel connect(int port) throws IOException {
+            SocketChannel ch = SocketChannel.open(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+            ch.socket().setTcpNoDelay(true);
+            return ch;
+        }
+    }
+
+    // Starts this class in another JVM with the same runtime options and class path. The heap
+    // options are not forwarded: each worker gets a heap sized to the data it holds, so p workers
+    // do not reserve p times the coordinator's -Xmx
+    private static Process launchWorker(long heapBytes, String... args) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(ProcessHandle.current().info().command().orElse("java"));
+        for (String option : ManagementFactory.getRuntimeMXBean().getInputArguments())
+            if (!option.startsWith("-Xmx") && !option.startsWith("-Xms")
+                    && !option.startsWith("-XX:MaxHeapSize=") && !option.startsWith("-XX:InitialHeapSize="))
+                command.add(option);
+        command.add("-Xmx" + ((WORKER_HEAP_FLOOR + heapBytes + (1 << 20) - 1) >> 20) + "m");
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(Benchmark.class.getName());
+        command.addAll(Arrays.asList(args));
+        return new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(ProcessBuilder.Redirect.INHERIT).start();
+    }
+
+    // Coordinator side: the worker processes and one control connection to each
+    static class SummaCluster implements AutoCloseable {
+        private final int pr, pc;
+        private final List<Process> processes = new ArrayList<>();
+        private final SocketChannel[] workers;
+        // Closes the connections of a run that outlives WORKER_RESULT_TIMEOUT_MS, which fails
+        // the coordinator's blocked read instead of hanging the benchmark on a stuck worker
+        private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "summa-watchdog");
+            t.setDaemon(true);
+            return t;
+        });
+        private volatile boolean timedOut;
+
+        private SummaCluster(int pr, int pc) {
+            this.pr = pr;
+            this.pc = pc;
+            workers = new SocketChannel[pr * pc];
+        }
+
+        static SummaCluster start(int processes, int m, int k, int n, String vec, int blockSize) throws IOException {
+            int[] grid = summaGrid(processes);
+            SummaCluster cluster = new SummaCluster(grid[0], grid[1]);
+            // A worker keeps its row of A panels, its column of B panels and its C block; twice that
+            // leaves room for the transposed panel inside gemm and the panels in flight
+            long rows = (m + grid[0] - 1) / grid[0], cols = (n + grid[1] - 1) / grid[1];
+            long heap = 2 * (rows * k + (long) k * cols + rows * cols) * Double.BYTES;
+            try (ServerSocketChannel server = ServerSocketChannel.open()) {
+                server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+                int port = ((InetSocketAddress) server.getLocalAddress()).getPort();
+                for (int r = 0; r < processes; r++)
+                    cluster.processes.add(launchWorker(heap, "worker", String.valueOf(port), String.valueOf(r)));
+
+                // HELLO carries the worker's rank and the port its peers connect to
+                int[] peerPorts = new int[processes];
+                for (int r = 0; r < processes; r++) {
+                    SocketChannel ch = Wire.accept(server, WORKER_START_TIMEOUT_MS);
+                    Wire.expect(ch, MSG_HELLO);
+                    int[] hello = Wire.readInts(ch, 2);
+                    cluster.workers[hello[0]] = ch;
+                    peerPorts[hello[0]] = hello[1];
+                }
+                int[] setup = new int[4 + processes];
+                setup[0] = MSG_SETUP;
+                setup[1] = grid[0];
+                setup[2] = grid[1];
+                setup[3] = blockSize;
+                System.arraycopy(peerPorts, 0, setup, 4, processes);
+                for (SocketChannel ch : cluster.workers) {
+                    Wire.writeInts(ch, setup);
+                    Wire.writeInts(ch, Arrays.asList(VECTORIZATION_OPTIONS).indexOf(vec));
+                }
+            } catch (IOException e) {
+                cluster.close();
+                throw e;
+            }
+            return cluster;
+        }
+
+        // Scatter, SUMMA on the workers, gather. Scatter and gather time plus the slowest
+        // worker's panel exchange count as communication, along with every byte moved.
+        void multiply(DenseMatrix A, DenseMatrix B, DenseMatrix C, RunStats stats) {
+            int m = A.rows, k = A.cols, n = B.cols, steps = pr * pc / gcd(pr, pc);
+            ScheduledFuture<?> alarm = watchdog.schedule(this::abort, WORKER_RESULT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            try {
+                long t0 = System.nanoTime(), bytes = 0;
+                for (int r = 0; r < workers.length; r++) {
+                    int bi = r / pc, bj = r % pc;
+                    Wire.writeInts(workers[r], MSG_RUN, m, k, n);
+                    for (int s = bj; s < steps; s += pc)
+                        bytes += Wire.writeBlock(workers[r], A, band(m, pr, bi), band(m, pr, bi + 1),
+                                band(k, steps, s), band(k, steps, s + 1));
+                    for (int s = bi; s < steps; s += pr)
+                        bytes += Wire.writeBlock(workers[r], B, band(k, steps, s), band(k, steps, s + 1),
+                                band(n, pc, bj), band(n, pc, bj + 1));
+                }
+                long commNanos = System.nanoTime() - t0, exchangeNanos = 0;
+
+                for (int r = 0; r < workers.length; r++) {
+                    int bi = r / pc, bj = r % pc;
+                    // The wait for the header is the workers' compute; only the payload is transfer
+                    Wire.expect(workers[r], MSG_RESULT);
+                    long[] report = Wire.readLongs(workers[r], 2);
+                    long t1 = System.nanoTime();
+                    bytes += Wire.readBlock(workers[r], C, band(m, pr, bi), band(m, pr, bi + 1),
+                            band(n, pc, bj), band(n, pc, bj + 1));
+                    commNanos += System.nanoTime() - t1;
+                    exchangeNanos = Math.max(exchangeNanos, report[0]);
+                    bytes += report[1];
+                }
+                stats.commNanos.addAndGet(commNanos + exchangeNanos);
+                stats.commBytes.addAndGet(bytes);
+            } catch (IOException e) {
+                if (timedOut)
+                    throw new UncheckedIOException(new IOException("No result from the workers within "
+                            + WORKER_RESULT_TIMEOUT_MS + " ms", e));
+                throw new UncheckedIOException(e);
+            } finally {
+                alarm.cancel(false);
+            }
+        }
+
+        private void abort() {
+            timedOut = true;
+            for (SocketChannel ch : workers) {
+                try {
+                    if (ch != null) ch.close();
+                } catch (IOException ignored) {
+                    // Closing is all that is needed to wake the coordinator
+                }
+            }
+            for (Process p : processes) p.destroyForcibly();
+        }
+
+        @Override
+        public void close() {
+            watchdog.shutdownNow();
+            for (SocketChannel ch : workers) {
+                if (ch == null) continue;
+                try {
+                    Wire.writeInts(ch, MSG_STOP);
+                    ch.close();
+                } catch (IOException ignored) {
+                    // The worker is gone already
+                }
+            }
+            for (Process p : processes) {
+                try {
+                    if (!p.waitFor(5, TimeUnit.SECONDS)) p.destroyForcibly();
+                } catch (InterruptedException e) {
+                    p.destroyForcibly();
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    // Worker side of the SUMMA engine, running in its own JVM
+    static class SummaWorker {
+        static void run(int coordinatorPort, int rank) throws Exception {
+            try (ServerSocketChannel server = ServerSocketChannel.open();
+                 SocketChannel coordinator = Wire.connect(coordinatorPort)) {
+                server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+                Wire.writeInts(coordinator, MSG_HELLO, rank, ((InetSocketAddress) server.getLocalAddress()).getPort());
+                Wire.expect(coordinator, MSG_SETUP);
+                int[] head = Wire.readInts(coordinator, 3);
+                int pr = head[0], pc = head[1], blockSize = head[2];
+                int[] ports = Wire.readInts(coordinator, pr * pc);
+                String vec = VECTORIZATION_OPTIONS[Wire.readInts(coordinator, 1)[0]];
+                int bi = rank / pc, bj = rank % pc;
+
+                // Row and column peers; the lower rank of each pair dials the higher one
+                SocketChannel[] peers = new SocketChannel[pr * pc];
+                int lower = 0;
+                for (int p = 0; p < pr * pc; p++) {
+                    if (p == rank || (p / pc != bi && p % pc != bj)) continue;
+                    if (p > rank) {
+                        peers[p] = Wire.connect(ports[p]);
+                        Wire.writeInts(peers[p], MSG_HELLO, rank);
+                    } else {
+                        lower++;
+                    }
+                }
+                for (int i = 0; i < lower; i++) {
+                    SocketChannel ch = Wire.accept(server, WORKER_START_TIMEOUT_MS);
+                    Wire.expect(ch, MSG_HELLO);
+                    peers[Wire.readInts(ch, 1)[0]] = ch;
+                }
+
+                // Sends never hold up the receives of this worker, so no pair of workers can wait on each other
+                ExecutorService sender = Executors.newSingleThreadExecutor();
+                try {
+                    while (Wire.readInts(coordinator, 1)[0] == MSG_RUN) {
+                        int[] dims = Wire.readInts(coordinator, 3);
+                        multiply(coordinator, peers, sender, pr, pc, bi, bj, dims[0], dims[1], dims[2], vec, blockSize);
+                    }
+                } finally {
+                    sender.shutdownNow();
+                    for (SocketChannel ch : peers)
+                        if (ch != null) ch.close();
+                }
+            }
+        }
+
+        private static void multiply(SocketChannel coordinator, SocketChannel[] peers, ExecutorService sender,
+                                     int pr, int pc, int bi, int bj, int m, int k, int n,
+                                     String vec, int blockSize) throws Exception {
+            int steps = pr * pc / gcd(pr, pc);
+            int rows = band(m, pr, bi + 1) - band(m, pr, bi), cols = band(n, pc, bj + 1) - band(n, pc, bj);
+            DenseMatrix[] aPanels = new DenseMatrix[steps], bPanels = new DenseMatrix[steps];
+            for (int s = bj; s < steps; s += pc) {
+                aPanels[s] = new DenseMatrix(rows, band(k, steps, s + 1) - band(k, steps, s));
+                Wire.readBlock(coordinator, aPanels[s], 0, aPanels[s].rows, 0, aPanels[s].cols);
+            }
+            for (int s = bi; s < steps; s += pr) {
+                bPanels[s] = new DenseMatrix(band(k, steps, s + 1) - band(k, steps, s), cols);
+                Wire.readBlock(coordinator, bPanels[s], 0, bPanels[s].rows, 0, bPanels[s].cols);
+            }
+
+            DenseMatrix C = new DenseMatrix(rows, cols);
+            List<Future<Long>> sends = new ArrayList<>();
+            long commNanos = 0;
+            for (int s = 0; s < steps; s++) {
+                int aOwner = s % pc, bOwner = s % pr;
+                if (bj == aOwner) {
+                    DenseMatrix panel = aPanels[s];
+                    for (int j = 0; j < pc; j++)
+                        if (j != bj) sends.add(sendPanel(sender, peers[bi * pc + j], panel));
+                }
+                if (bi == bOwner) {
+                    DenseMatrix panel = bPanels[s];
+                    for (int i = 0; i < pr; i++)
+                        if (i != bi) sends.add(sendPanel(sender, peers[i * pc + bj], panel));
+                }
+
+                long t0 = System.nanoTime();
+                // Every worker receives A before B, in step order, so panels are read in the order they were sent
+                if (bj != aOwner) aPanels[s] = receivePanel(peers[bi * pc + aOwner], rows, band(k, steps, s + 1) - band(k, steps, s));
+                if (bi != bOwner) bPanels[s] = receivePanel(peers[bOwner * pc + bj], band(k, steps, s + 1) - band(k, steps, s), cols);
+                commNanos += System.nanoTime() - t0;
+
+                gemm(false, false, 1.0, aPanels[s], bPanels[s], s == 0 ? 0.0 : 1.0, C, vec, null, blockSize);
+            }
+
+            long t0 = System.nanoTime(), bytes = 0;
+            for (Future<Long> f : sends) bytes += f.get();
+            commNanos += System.nanoTime() - t0;
+
+            Wire.writeInts(coordinator, MSG_RESULT);
+            Wire.writeLongs(coordinator, commNanos, bytes);
+            Wire.writeBlock(coordinator, C, 0, rows, 0, cols);
+        }
+
+        private static Future<Long> sendPanel(ExecutorService sender, SocketChannel ch, DenseMatrix panel) {
+            return sender.submit(() -> {
+                Wire.writeInts(ch, MSG_PANEL, panel.rows, panel.cols);
+                return Wire.writeBlock(ch, panel, 0, panel.rows, 0, panel.cols);
+            });
+        }
+
+        private static DenseMatrix receivePanel(SocketChannel ch, int rows, int cols) throws IOException {
+            Wire.expect(ch, MSG_PANEL);
+            int[] dims = Wire.readInts(ch, 2);
+            if (dims[0] != rows || dims[1] != cols)
+                throw new IOException("Expected a " + rows + "x" + cols + " panel, received " + dims[0] + "x" + dims[1]);
+            DenseMatrix panel = new DenseMatrix(rows, cols);
+            Wire.readBlock(ch, panel, 0, rows, 0, cols);
+            return panel;
+        }
+    }
+
+    // ---------------- SHARED-MEMORY ENGINE (worker JVMs on mapped /dev/shm files) ----------------
+    // The coordinator writes A and B into <prefix>.in, worker JVMs map it read-only and write
+    // disjoint C tiles into <prefix>.out, and <prefix>.ctl holds the barrier between the
+    // phases. Nothing is serialized: every process reads and writes the same physical pages.
+
+    // Directory for the shared files: tmpfs where there is one, else the temp directory, whose
+    // mappings still share the page cache but may be written back to disk
+    private static Path sharedMemoryDir() {
+        Path shm = Paths.get(SHM_DIR);
+        if (Files.isDirectory(shm) && Files.isWritable(shm)) return shm;
+        System.out.println("[WARN] " + SHM_DIR + " is not available, using the temp directory for shared segments");
+        return Paths.get(System.getProperty("java.io.tmpdir"));
+    }
+
+    private static MemorySegment mapShared(Path file, long bytes, boolean writable, Arena arena) throws IOException {
+        try (FileChannel channel = writable
+                ? FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(file, StandardOpenOption.READ)) {
+            return channel.map(writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY, 0, bytes, arena);
+        }
+    }
+
+    // File-backed barrier: slot 0 is the phase generation the coordinator publishes, slot 1 the
+    // stop flag, and from slot BARRIER_SLOTS on each worker has its arrival generation. Volatile
+    // accesses order the plain reads and writes of the data pages around it.
+    static final class SharedBarrier {
+        // Indexed by slot: (segment, slot) -> long
+        private static final VarHandle LONGS = ValueLayout.JAVA_LONG.arrayElementVarHandle();
+        private static final int BARRIER_SLOTS = 8;
+        private final MemorySegment ctl;
+        private final int parties;
+
+        // The coordinator creates the barrier and resets every slot, since a file left behind by
+        // an earlier run with the same pid may still hold its generation and stop flag
+        SharedBarrier(Path file, int parties, boolean create, Arena arena) throws IOException {
+            this.parties = parties;
+            ctl = mapShared(file, (long) (BARRIER_SLOTS + parties) * Long.BYTES, true, arena);
+            if (create) {
+                set(0, 0);
+                set(1, 0);
+                for (int r = 0; r < parties; r++) set(BARRIER_SLOTS + r, -1);
+            }
+        }
+
+        private long get(int slot) {
+            return (long) LONGS.getVolatile(ctl, (long) slot);
+        }
+
+        private void set(int slot, long value) {
+            LONGS.setVolatile(ctl, (long) slot, value);
+        }
+
+        // Coordinator: starts phase generation (or tells the workers to exit)
+        void publish(long generation, boolean stop) {
+            set(1, stop ? 1 : 0);
+            set(0, generation);
+        }
+
+        // Worker: blocks until a generation after the given one is published, and returns it
+        long awaitPhase(long after) {
+            long g;
+            for (int spins = 0; (g = get(0)) <= after; spins++) pause(spins);
+            return g;
+        }
+
+        boolean stopped() {
+            return get(1) != 0;
+        }
+
+        void arrive(int rank, long generation) {
+            set(BARRIER_SLOTS + rank, generation);
+        }
+
+        // Coordinator: blocks until every worker arrived at generation; a dead worker or running
+        // out of time fails the phase
+        void awaitArrivals(long generation, List<Process> workers, long timeoutMs) throws IOException {
+            long deadline = System.currentTimeMillis() + timeoutMs;
+            for (int r = 0; r < parties; r++)
+                for (int spins = 0; get(BARRIER_SLOTS + r) < generation; spins++) {
+                    pause(spins);
+                    if ((spins & 1023) != 1023) continue;
+                    if (!workers.get(r).isAlive())
+                        throw new IOException("Worker " + r + " exited with code " + workers.get(r).exitValue());
+                    if (System.currentTimeMillis() > deadline)
+                        throw new IOException("Worker " + r + " did not reach the barrier within " + timeoutMs + " ms");
+                }
+        }
+
+        // Spin briefly for short phases, then park so idle waiters leave the cores to the workers
+        private static void pause(int spins) {
+            if (spins < 1000) Thread.onSpinWait();
+            else LockSupport.parkNanos(20_000);
+        }
+    }
+
+    // Workers' share of C: tiles t = rank, rank + processes, ... of the SHM_TILE grid, each
+    // accumulated from heap copies of its A and B tiles and stored once
+    private static void multiplySharedTiles(MappedMatrix A, MappedMatrix B, MappedMatrix C, int rank, int processes,
+                                            String vec, int blockSize, double[][] buffers) {
+        int m = A.rows, k = A.cols, n = B.cols, tile = SHM_TILE;
+        int tm = (m + tile - 1) / tile, tn = (n + tile - 1) / tile;
+        for (int t = rank; t < tm * tn; t += processes) {
+            int i0 = t / tn * tile, j0 = t % tn * tile;
+            int r = Math.min(tile, m - i0), c = Math.min(tile, n - j0);
+            DenseMatrix ct = new DenseMatrix(r, c, buffers[2]);
+            if (k == 0) Arrays.fill(buffers[2], 0, r * c, 0.0);
+            for (int k0 = 0; k0 < k; k0 += tile) {
+                int d = Math.min(tile, k - k0);
+                A.readTile(i0, k0, r, d, buffers[0]);
+                B.readTile(k0, j0, d, c, buffers[1]);
+                gemm(false, false, 1.0, new DenseMatrix(r, d, buffers[0]), new DenseMatrix(d, c, buffers[1]),
+                        k0 == 0 ? 0.0 : 1.0, ct, vec, null, blockSize);
+            }
+            C.writeTile(i0, j0, r, c, buffers[2]);
+        }
+    }
+
+    // Coordinator side: the shared files, their mappings and the worker processes
+    static class SharedMemoryCluster implements AutoCloseable {
+        private final Path prefix;
+        private final Arena arena = Arena.ofShared();
+        private final List<Process> workers = new ArrayList<>();
+        private MappedMatrix A, B, C;
+        private SharedBarrier barrier;
+        private long generation;
+
+        private SharedMemoryCluster(Path prefix) {
+            this.prefix = prefix;
+        }
+
+        static SharedMemoryCluster start(int processes, int m, int k, int n, String vec, int blockSize) throws IOException {
+            Path prefix = sharedMemoryDir().resolve("benchmark_" + ProcessHandle.current().pid());
+            SharedMemoryCluster cluster = new SharedMemoryCluster(prefix);
+            try {
+                long aBytes = (long) m * k * Double.BYTES, bBytes = (long) k * n * Double.BYTES;
+                MemorySegment in = mapShared(file(prefix, "in"), aBytes + bBytes, true, cluster.arena);
+                cluster.A = new MappedMatrix(in, m, k);
+                cluster.B = new MappedMatrix(in.asSlice(aBytes), k, n);
+                cluster.C = new MappedMatrix(mapShared(file(prefix, "out"), (long) m * n * Double.BYTES, true, cluster.arena), m, n);
+                cluster.barrier = new SharedBarrier(file(prefix, "ctl"), processes, true, cluster.arena);
+                for (int r = 0; r < processes; r++)
+                    // The operands stay in the mapped files; only the tile buffers live on the heap
+                    cluster.workers.add(launchWorker(3L * SHM_TILE * SHM_TILE * Double.BYTES,
+                            "shm-worker", prefix.toString(), String.valueOf(r), String.valueOf(processes), String.valueOf(m), String.valueOf(k), String.valueOf(n),
+                            vec, String.valueOf(blockSize)));
+                // Generation 0: every worker has mapped the files
+                cluster.barrier.awaitArrivals(0, cluster.workers, WORKER_START_TIMEOUT_MS);
+            } catch (IOException e) {
+                cluster.close();
+                throw e;
+            }
+            return cluster;
+        }
+
+        private static Path file(Path prefix, String suffix) {
+            return Paths.get(prefix + "." + suffix);
+        }
+
+        // Write A and B into the segment, run one phase, copy C out. The copies in and out are
+        // the communication; the phase itself is pure compute on the shared pages.
+        void multiply(DenseMatrix A, DenseMatrix B, DenseMatrix C, RunStats stats) {
+            try {
+                long t0 = System.nanoTime();
+                this.A.writeTile(0, 0, A.rows, A.cols, A.data);
+                this.B.writeTile(0, 0, B.rows, B.cols, B.data);
+                long commNanos = System.nanoTime() - t0;
+
+                barrier.publish(++generation, false);
+                barrier.awaitArrivals(generation, workers, WORKER_RESULT_TIMEOUT_MS);
+
+                long t1 = System.nanoTime();
+                this.C.readTile(0, 0, C.rows, C.cols, C.data);
+                stats.commNanos.addAndGet(commNanos + System.nanoTime() - t1);
+                stats.commBytes.addAndGet(this.A.bytes() + this.B.bytes() + this.C.bytes());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (barrier != null) barrier.publish(++generation, true);
+            for (Process p : workers) {
+                try {
+                    if (!p.waitFor(5, TimeUnit.SECONDS)) p.destroyForcibly();
+                } catch (InterruptedException e) {
+                    p.destroyForcibly();
+                    Thread.currentThread().interrupt();
+                }
+            }
+            arena.close();
+            try {
+                for (String suffix : new String[]{"in", "out", "ctl"}) Files.deleteIfExists(file(prefix, suffix));
+            } catch (IOException e) {
+                System.out.println("[WARN] Could not remove shared segments: " + e.getMessage());
+            }
+        }
+    }
+
+    // Worker side of the shared-memory engine, running in its own JVM
+    static class SharedMemoryWorker {
+        static void run(String prefix, int rank, int processes, int m, int k, int n, String vec, int blockSize)
+                throws IOException {
+            try (Arena arena = Arena.ofConfined()) {
+                long aBytes = (long) m * k * Double.BYTES, bBytes = (long) k * n * Double.BYTES;
+                MemorySegment in = mapShared(Paths.get(prefix + ".in"), aBytes + bBytes, false, arena);
+                MappedMatrix A = new MappedMatrix(in, m, k), B = new MappedMatrix(in.asSlice(aBytes), k, n);
+                MappedMatrix C = new MappedMatrix(mapShared(Paths.get(prefix + ".out"), (long) m * n * Double.BYTES, true, arena), m, n);
+                SharedBarrier barrier = new SharedBarrier(Paths.get(prefix + ".ctl"), processes, false, arena);
+                double[][] buffers = new double[3][SHM_TILE * SHM_TILE];
+
+                barrier.arrive(rank, 0);
+                for (long g = 0; ; ) {
+                    g = barrier.awaitPhase(g);
+                    if (barrier.stopped()) return;
+                    multiplySharedTiles(A, B, C, rank, processes, vec, blockSize, buffers);
+                    barrier.arrive(rank, g);
+                }
+            }
+        }
+    }
+
+    // ---------------- SYRK (C = A * A^T, lower triangle) ----------------
+    // Gram matrix of the rows of an n x k matrix A. A's rows are already the rows of the
+    // "BT" operand, so the blocked kernels read A twice in place and nothing is transposed.
+    // Only tiles on or below the diagonal are computed, and only the lower triangle of C
+    // (diagonal included) is overwritten; with mirror, each finished tile is also copied
+    // across the diagonal, while it is still in cache.
+    private static void syrk(DenseMatrix A, DenseMatrix C, boolean mirror, String vec,
+                             ForkJoinPool pool, int blockSize) {
+        int n = A.rows, k = A.cols;
+        if (C.rows != n || C.cols != n)
+            throw new IllegalArgumentException("Cannot write A * A^T of a " + n + "x" + k + " matrix into "
+                    + C.rows + "x" + C.cols);
+        // The triangle holds about half of the grid's tiles
+        int edge = pool != null ? tileEdge(n, n, 2 * pool.getParallelism(), blockSize) : blockSize;
+        int t = (n + edge - 1) / edge;
+
+        // Lower-triangle tiles in row order, so consecutive tiles share A's row panel
+        int[] tiles = new int[t * (t + 1) / 2];
+        for (int ti = 0, c = 0; ti < t; ti++)
+            for (int tj = 0; tj <= ti; tj++)
+                tiles[c++] = ti * t + tj;
+
+        IntConsumer tile = idx -> {
+            int i0 = tiles[idx] / t * edge, j0 = tiles[idx] % t * edge;
+            syrkTile(A, C, i0, Math.min(i0 + edge, n), j0, Math.min(j0 + edge, n), k, mirror, vec, blockSize);
+        };
+        if (pool == null) {
+            for (int idx = 0; idx < tiles.length; idx++) tile.accept(idx);
+            return;
+        }
+
+        // A diagonal tile is half the work of the others; cut the list into parts of equal weight
+        int parts = pool.getParallelism() * MIN_TILES_PER_WORKER;
+        int[] bounds = new int[parts + 1];
+        long total = (long) tiles.length * 2 - t, weight = 0;
+        for (int idx = 0, p = 1; idx < tiles.length; idx++) {
+            weight += tiles[idx] / t == tiles[idx] % t ? 1 : 2;
+            while (p < parts && weight * parts >= total * p) bounds[p++] = idx + 1;
+        }
+        bounds[parts] = tiles.length;
+        pool.submit(() ->
+                IntStream.range(0, parts).parallel().forEach(p -> {
+                    for (int idx = bounds[p]; idx < bounds[p + 1]; idx++) tile.accept(idx);
+                })
+        ).join();
+    }
+
+    // One tile C[i0:i1, j0:j1] with j0 <= i0, restricted to j <= i on the diagonal
+    private static void syrkTile(DenseMatrix A, DenseMatrix C, int i0, int i1, int j0, int j1, int k,
+                                 boolean mirror, String vec, int blockSize) {
+        boolean diagonal = i0 == j0;
+        for (int i = i0; i < i1; i++)
+            Arrays.fill(C.data, i * C.ld + j0, i * C.ld + (diagonal ? i + 1 : j1), 0.0);
+
+        for (int kk = 0; kk < k; kk += blockSize) {
+            int kEnd = Math.min(kk + blockSize, k);
+            if (!diagonal) {
+                multiplyTile(A, A, C, i0, i1, j0, j1, kk, kEnd, vec);
+                continue;
+            }
+            // Strips of FMA_MR rows keep the register tiling left of the diagonal; the small
+            // triangle on it goes row by row
+            for (int r = i0; r < i1; r += FMA_MR) {
+                int rEnd = Math.min(r + FMA_MR, i1);
+                if (r > j0) multiplyTile(A, A, C, r, rEnd, j0, r, kk, kEnd, vec);
+                for (int i = r; i < rEnd; i++)
+                    multiplyTile(A, A, C, i, i + 1, r, i + 1, kk, kEnd, vec);
+            }
+        }
+
+        if (mirror)
+            for (int i = i0; i < i1; i++)
+                for (int j = j0; j < (diagonal ? i : j1); j++)
+                    C.data[j * C.ld + i] = C.data[i * C.ld + j];
+    }
+
+    // ---------------- MATRIX POWER ----------------
+    // Multiplications A^p takes by squaring: one squaring per bit below the top one, plus one
+    // product per set bit after the first
+    private static int powerSteps(long p) {
+        return 63 - Long.numberOfLeadingZeros(p) + Long.bitCount(p) - 1;
+    }
+
+    // C = A^p (p >= 1) by binary exponentiation. C and the two scratch matrices are the only
+    // buffers: the running result and the current square each hold one, and every product is
+    // written by gemm (beta = 0, B read in place) into the third. Nothing is allocated.
+    private static void matrixPower(DenseMatrix A, long p, DenseMatrix C, DenseMatrix[] scratch,
+                                    String vec, ForkJoinPool pool, int blockSize) {
+        if (p < 1) throw new IllegalArgumentException("Exponent must be at least 1, got " + p);
+        if (A.rows != A.cols)
+            throw new IllegalArgumentException("Cannot raise a " + A.rows + "x" + A.cols + " matrix to a power");
+        DenseMatrix[] buffers = {C, scratch[0], scratch[1]};
+        // A^1 is never copied: result and base start out as A itself
+        DenseMatrix base = A, result = null;
+        while (true) {
+            if ((p & 1) != 0) {
+                if (result == null) {
+                    result = base;
+                } else {
+                    DenseMatrix next = spareBuffer(buffers, result, base);
+                    gemm(false, false, 1.0, result, base, 0.0, next, vec, pool, blockSize);
+                    result = next;
+                }
+            }
+            p >>>= 1;
+            if (p == 0) break;
+            DenseMatrix next = spareBuffer(buffers, result, base);
+            gemm(false, false, 1.0, base, base, 0.0, next, vec, pool, blockSize);
+            base = next;
+        }
+        if (result != C) System.arraycopy(result.data, 0, C.data, 0, C.rows * C.ld);
+    }
+
+    // The buffer that holds neither the running result nor the current square
+    private static DenseMatrix spareBuffer(DenseMatrix[] buffers, DenseMatrix result, DenseMatrix base) {
+        for (DenseMatrix M : buffers)
+            if (M != result && M != base) return M;
+        throw new IllegalStateException("No free power buffer");
+    }
+
+    // The same squaring schedule through multiplyMatrices, which transposes its right operand and
+    // needs a fresh zeroed result for every step; kept as the allocation baseline
+    private static DenseMatrix matrixPowerAllocating(DenseMatrix A, long p, String vec, boolean parallel,
+                                                     ForkJoinPool pool, int blockSize) {
+        DenseMatrix base = A, result = null;
+        while (true) {
+            if ((p & 1) != 0) {
+                if (result == null) {
+                    result = base;
+                } else {
+                    DenseMatrix next = new DenseMatrix(A.rows, A.cols);
+                    multiplyMatrices(result, base, vec, parallel, next, pool, blockSize);
+                    result = next;
+                }
+            }
+            p >>>= 1;
+            if (p == 0) return result;
+            DenseMatrix next = new DenseMatrix(A.rows, A.cols);
+            multiplyMatrices(base, base, vec, parallel, next, pool, blockSize);
+            base = next;
+        }
+    }
+
+    // ---------------- MATRIX CHAIN ----------------
+    // Optimal parenthesization of M1 * ... * Mq (Mi is dims[i - 1] x dims[i]) by the classic
+    // O(q^3) dynamic program. The estimated cost of a product is its 2 * p * q * r flops: every
+    // engine here does that much work, padded tiles excepted.
+    private static ChainPlan planChain(int[] dims) {
+        int q = dims.length - 1;
+        double[][] cost = new double[q][q];
+        int[][] split = new int[q][q];
+        for (int len = 2; len <= q; len++)
+            for (int i = 0; i + len - 1 < q; i++) {
+                int j = i + len - 1;
+                cost[i][j] = Double.POSITIVE_INFINITY;
+                for (int s = i; s < j; s++) {
+                    double c = cost[i][s] + cost[s + 1][j] + 2.0 * dims[i] * dims[s + 1] * dims[j + 1];
+                    if (c < cost[i][j]) {
+                        cost[i][j] = c;
+                        split[i][j] = s;
+                    }
+                }
+            }
+        return new ChainPlan(dims, split);
+    }
+
+    // A product tree over the chain: Mi..Mj is (Mi..Ms) * (Ms+1..Mj) with s = split[i][j] (0-based)
+    static class ChainPlan {
+        final int[] dims;
+        final int[][] split;
+        final double flops;
+
+        ChainPlan(int[] dims, int[][] split) {
+            this.dims = dims;
+            this.split = split;
+            this.flops = flops(0, dims.length - 2);
+        }
+
+        static ChainPlan leftToRight(int[] dims) {
+            int q = dims.length - 1;
+            int[][] split = new int[q][q];
+            for (int i = 0; i < q; i++)
+                for (int j = i + 1; j < q; j++)
+                    split[i][j] = j - 1;
+            return new ChainPlan(dims, split);
+        }
+
+        private double flops(int i, int j) {
+            if (i == j) return 0;
+            int s = split[i][j];
+            return flops(i, s) + flops(s + 1, j) + 2.0 * dims[i] * dims[s + 1] * dims[j + 1];
+        }
+
+        private String describe(int i, int j) {
+            if (i == j) return "M" + (i + 1);
+            int s = split[i][j];
+            return "(" + describe(i, s) + " " + describe(s + 1, j) + ")";
+        }
+
+        @Override
+        public String toString() {
+            return describe(0, dims.length - 2);
+        }
+    }
+
+    // Free intermediate buffers of a chain evaluation. A buffer returns here as soon as the
+    // product that consumed it is done, so later products and later runs reuse it.
+    static class ChainWorkspace {
+        private final List<double[]> free = new ArrayList<>();
+
+        // Smallest free buffer that fits, or a new one
+        DenseMatrix take(int rows, int cols) {
+            int best = -1;
+            for (int b = 0; b < free.size(); b++)
+                if (free.get(b).length >= rows * cols && (best < 0 || free.get(b).length < free.get(best).length))
+                    best = b;
+            return new DenseMatrix(rows, cols, best >= 0 ? free.remove(best) : new double[Math.multiplyExact(rows, cols)]);
+        }
+
+        void release(DenseMatrix M) {
+            free.add(M.data);
+        }
+    }
+
+    // C = M1 * ... * Mq evaluated in the plan's order with gemm, which reads every operand in place
+    private static void multiplyChain(DenseMatrix[] chain, ChainPlan plan, DenseMatrix C, ChainWorkspace workspace,
+                                      String vec, ForkJoinPool pool, int blockSize) {
+        if (chain.length == 1) {
+            System.arraycopy(chain[0].data, 0, C.data, 0, C.rows * C.ld);
+            return;
+        }
+        multiplyChain(chain, plan, 0, chain.length - 1, C, workspace, vec, pool, blockSize);
+    }
+
+    // Writes Mi..Mj (i < j) into out
+    private static void multiplyChain(DenseMatrix[] chain, ChainPlan plan, int i, int j, DenseMatrix out,
+                                      ChainWorkspace workspace, String vec, ForkJoinPool pool, int blockSize) {
+        int s = plan.split[i][j];
+        DenseMatrix left = chain[i], right = chain[j];
+        if (s > i) {
+            left = workspace.take(plan.dims[i], plan.dims[s + 1]);
+            multiplyChain(chain, plan, i, s, left, workspace, vec, pool, blockSize);
+        }
+        if (s + 1 < j) {
+            right = workspace.take(plan.dims[s + 1], plan.dims[j + 1]);
+            multiplyChain(chain, plan, s + 1, j, right, workspace, vec, pool, blockSize);
+        }
+        gemm(false, false, 1.0, left, right, 0.0, out, vec, pool, blockSize);
+        if (left != chain[i]) workspace.release(left);
+        if (right != chain[j]) workspace.release(right);
+    }
+
+    // ---------------- RECURSIVE ENGINE (cache-oblivious) ----------------
+    private static void multiplyRecursive(DenseMatrix A, PreparedB B, String vec, DenseMatrix C,
+                                          ForkJoinPool pool, int cutoff) {
+        if (B.transposed == null)
+            throw new IllegalArgumentException("B was prepared for the packed engine, not the recursive one");
+        DenseMatrix BT = B.transposed;
+        // A is m x k, BT is n x k and C is m x n
+        int m = A.rows, k = A.cols, n = BT.rows;
+        if (BT.cols != k || C.rows != m || C.cols != n)
+            throw new IllegalArgumentException("Cannot multiply " + m + "x" + k + " by " + BT.cols + "x" + n
+                    + " into " + C.rows + "x" + C.cols);
+        RecursiveMultiply root = new RecursiveMultiply(A, BT, C, vec, cutoff, pool != null,
+                0, m, 0, n, 0, k);
+        if (pool != null)
+            pool.invoke(root);
+        else
+            root.invoke();
+    }
+
+    // Halves the largest of m, n and k until the sub-problem fits the cutoff, so every cache
+    // level eventually sees a working set that fits it without a tuned block size. Splits of
+    // m or n write disjoint parts of C and run as parallel subtasks; the two halves of a k
+    // split accumulate into the same C tile and therefore run one after the other.
+    @SuppressWarnings("serial") // tasks are never serialized
+    static class RecursiveMultiply extends RecursiveAction {
+        final DenseMatrix A, BT, C;
+        final String vec;
+        final int cutoff;
+        final boolean fork;
+        final int i0, i1, j0, j1, k0, k1;
+
+        RecursiveMultiply(DenseMatrix A, DenseMatrix BT, DenseMatrix C, String vec, int cutoff, boolean fork,
+                          int i0, int i1, int j0, int j1, int k0, int k1) {
+            this.A = A;
+            this.BT = BT;
+            this.C = C;
+            this.vec = vec;
+            this.cutoff = cutoff;
+            this.fork = fork;
+            this.i0 = i0;
+            this.i1 = i1;
+            this.j0 = j0;
+            this.j1 = j1;
+            this.k0 = k0;
+            this.k1 = k1;
+        }
+
+        @Override
+        protected void compute() {
+            int m = i1 - i0, n = j1 - j0, k = k1 - k0;
+            if (m <= cutoff && n <= cutoff && k <= cutoff) {
+                multiplyTile(A, BT, C, i0, i1, j0, j1, k0, k1, vec);
+                return;
+            }
+
+            if (m >= n && m >= k) {
+                int mid = i0 + m / 2;
+                invokeBoth(sub(i0, mid, j0, j1, k0, k1), sub(mid, i1, j0, j1, k0, k1));
+            } else if (n >= k) {
+                int mid = j0 + n / 2;
+                invokeBoth(sub(i0, i1, j0, mid, k0, k1), sub(i0, i1, mid, j1, k0, k1));
+            } else {
+                int mid = k0 + k / 2;
+                sub(i0, i1, j0, j1, k0, mid).compute();
+                sub(i0, i1, j0, j1, mid, k1).compute();
+            }
+        }
+
+        private void invokeBoth(RecursiveMultiply first, RecursiveMultiply second) {
+            if (fork) {
+                invokeAll(first, second);
+            } else {
+                first.compute();
+                second.compute();
+            }
+        }
+
+        private RecursiveMultiply sub(int i0, int i1, int j0, int j1, int k0, int k1) {
+            return new RecursiveMultiply(A, BT, C, vec, cutoff, fork, i0, i1, j0, j1, k0, k1);
+        }
+    }
+
+    // ---------------- INTEGER ENGINE ----------------
+    private static final VectorSpecies<Integer> INT_SPECIES = IntVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Long> LONG_SPECIES = LongVector.SPECIES_PREFERRED;
+    // Ints that widen lane-for-lane into one LONG_SPECIES vector
+    private static final VectorSpecies<Integer> INT_HALF_SPECIES =
+            VectorSpecies.of(int.class, VectorShape.forBitSize(LONG_SPECIES.vectorBitSize() / 2));
+
+    // Runs kernel over the flat blocked engine's iteration space of an m x k by k x n product:
+    // k-blocks of blockSize inside either blockSize tiles or, on a pool, the curve-ordered tile
+    // grid of multiplyMatrices. The k-blocks of one (ii, jj) tile always run in ascending order.
+    private static void forEachTile(int m, int n, int k, ForkJoinPool pool, int blockSize, TileKernel kernel) {
+        if (pool != null) {
+            int edge = tileEdge(m, n, pool.getParallelism(), blockSize);
+            int tileRows = (m + edge - 1) / edge, tileCols = (n + edge - 1) / edge;
+            int[] tiles = tileOrder(tileRows, tileCols, TILE_ORDER);
+            pool.submit(() ->
+                    IntStream.range(0, tiles.length).parallel().forEach(t -> {
+                        int ii = tiles[t] / tileCols * edge;
+                        int jj = tiles[t] % tileCols * edge;
+                        int iEnd = Math.min(ii + edge, m), jEnd = Math.min(jj + edge, n);
+                        for (int kk = 0; kk < k; kk += blockSize)
+                            kernel.run(ii, iEnd, jj, jEnd, kk, Math.min(kk + blockSize, k));
+                    })
+            ).join();
+        } else {
+            for (int ii = 0; ii < m; ii += blockSize)
+                for (int jj = 0; jj < n; jj += blockSize)
+                    for (int kk = 0; kk < k; kk += blockSize)
+                        kernel.run(ii, Math.min(ii + blockSize, m), jj, Math.min(jj + blockSize, n),
+                                kk, Math.min(kk + blockSize, k));
+        }
+    }
+
+    // C[i0:i1, j0:j1] += A[i0:i1, k0:k1] * BT[j0:j1, k0:k1]^T for one element type
+    @FunctionalInterface
+    interface TileKernel {
+        void run(int i0, int i1, int j0, int j1, int k0, int k1);
+    }
+
+    // Same tiling as the flat blocked engine, but A and BT stay int[] and C is long[]. Products
+    // are summed in int lanes when one k-block of them provably fits in an int, otherwise the
+    // operands are widened to long lanes first; either way every block sum lands in a long.
+    private static void multiplyInt(IntMatrix A, IntMatrix BT, LongMatrix C, boolean vectorize,
+                                    ForkJoinPool pool, int blockSize) {
+        int n = A.size;
+        boolean intLanes = (double) A.maxAbs() * BT.maxAbs() * Math.min(blockSize, n) <= Integer.MAX_VALUE;
+        forEachTile(n, n, n, pool, blockSize, (i0, i1, j0, j1, k0, k1) ->
+                multiplyTileInt(A, BT, C, i0, i1, j0, j1, k0, k1, vectorize, intLanes));
+    }
+
+    private static void multiplyTileInt(IntMatrix A, IntMatrix BT, LongMatrix C,
+                                        int i0, int i1, int j0, int j1, int kk, int kEnd,
+                                        boolean vectorize, boolean intLanes) {
+        int[] a = A.data, bt = BT.data;
+        for (int i = i0; i < i1; i++) {
+            int aRow = i * A.ld;
+            for (int j = j0; j < j1; j++) {
+                int bRow = j * BT.ld;
+                long sum = 0;
+                int k = kk;
+                if (vectorize && intLanes) {
+                    IntVector acc = IntVector.zero(INT_SPECIES);
+                    for (; k <= kEnd - INT_SPECIES.length(); k += INT_SPECIES.length()) {
+                        IntVector va = IntVector.fromArray(INT_SPECIES, a, aRow + k);
+                        IntVector vb = IntVector.fromArray(INT_SPECIES, bt, bRow + k);
+                        acc = acc.add(va.mul(vb));
+                    }
+                    sum = acc.reduceLanes(VectorOperators.ADD);
+                } else if (vectorize) {
+                    LongVector acc = LongVector.zero(LONG_SPECIES);
+                    for (; k <= kEnd - LONG_SPECIES.length(); k += LONG_SPECIES.length()) {
+                        LongVector va = (LongVector) IntVector.fromArray(INT_HALF_SPECIES, a, aRow + k)
+                                .convertShape(VectorOperators.I2L, LONG_SPECIES, 0);
+                        LongVector vb = (LongVector) IntVector.fromArray(INT_HALF_SPECIES, bt, bRow + k)
+                                .convertShape(VectorOperators.I2L, LONG_SPECIES, 0);
+                        acc = acc.add(va.mul(vb));
+                    }
+                    sum = acc.reduceLanes(VectorOperators.ADD);
+                }
+                for (; k < kEnd; k++)
+                    sum += (long) a[aRow + k] * bt[bRow + k];
+                C.data[i * C.ld + j] += sum;
+            }
+        }
+    }
+
+    private static IntMatrix transposeMatrix(IntMatrix M) {
+        int n = M.size;
+        IntMatrix T = new IntMatrix(n);
+        for (int i = 0; i < n; i++)
+            for (int j = 0; j < n; j++)
+                T.data[j * T.ld + i] = M.data[i * M.ld + j];
+        return T;
+    }
+
+    // ---------------- QUANTIZED ENGINE ----------------
+    private static final VectorSpecies<Byte> BYTE_SPECIES = ByteVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Short> SHORT_SPECIES = ShortVector.SPECIES_PREFERRED;
+
+    // Asymmetric int8 quantization with one scale and zero point per row: x ~ scale * (q - zeroPoint).
+    // Rows whose values already sit on an integer grid of at most 256 steps keep scale 1 and lose nothing.
+    private static QuantizedMatrix quantize(DenseMatrix M) {
+        int n = M.size;
+        QuantizedMatrix Q = new QuantizedMatrix(n);
+        for (int i = 0; i < n; i++) {
+            int row = i * M.ld;
+            double min = Double.MAX_VALUE, max = -Double.MAX_VALUE;
+            boolean integral = true;
+            for (int j = 0; j < n; j++) {
+                double v = M.data[row + j];
+                min = Math.min(min, v);
+                max = Math.max(max, v);
+                integral &= v == Math.rint(v);
+            }
+            double scale = integral && max - min <= 255 ? 1.0 : Math.max(max - min, Double.MIN_NORMAL) / 255.0;
+            int zeroPoint = (int) (Byte.MIN_VALUE - Math.round(min / scale));
+            int sum = 0;
+            for (int j = 0; j < n; j++) {
+                long q = Math.round(M.data[row + j] / scale) + zeroPoint;
+                byte b = (byte) Math.max(Byte.MIN_VALUE, Math.min(Byte.MAX_VALUE, q));
+                Q.data[i * Q.ld + j] = b;
+                sum += b;
+            }
+            Q.scale[i] = (float) scale;
+            Q.zeroPoint[i] = zeroPoint;
+            Q.rowSum[i] = sum;
+        }
+        return Q;
+    }
+
+    // Integer dot products of the quantized codes go through the blocked tiling into acc. After a
+    // tile's last k-block, on the worker that computed it, the zero points are removed with the
+    // precomputed row sums and both scales applied:
+    // C[i][j] = sA[i] * sB[j] * (acc - zB[j] * sum(qA[i]) - zA[i] * sum(qB[j]) + K * zA[i] * zB[j])
+    private static void multiplyQuantized(QuantizedMatrix A, QuantizedMatrix BT, IntMatrix acc, FloatMatrix C,
+                                          boolean vectorize, ForkJoinPool pool, int blockSize) {
+        int n = A.size;
+        forEachTile(n, n, n, pool, blockSize, (i0, i1, j0, j1, k0, k1) -> {
+            multiplyTileInt8(A, BT, acc, i0, i1, j0, j1, k0, k1, vectorize);
+            if (k1 == n) dequantizeTile(A, BT, acc, C, i0, i1, j0, j1);
+        });
+    }
+
+    private static void dequantizeTile(QuantizedMatrix A, QuantizedMatrix BT, IntMatrix acc, FloatMatrix C,
+                                       int i0, int i1, int j0, int j1) {
+        int n = A.size;
+        for (int i = i0; i < i1; i++) {
+            int za = A.zeroPoint[i];
+            for (int j = j0; j < j1; j++) {
+                int zb = BT.zeroPoint[j];
+                long dot = acc.data[i * acc.ld + j] - (long) zb * A.rowSum[i] - (long) za * BT.rowSum[j]
+                        + (long) n * za * zb;
+                C.data[i * C.ld + j] = A.scale[i] * BT.scale[j] * dot;
+            }
+        }
+    }
+
+    // |q| <= 128, so a product fits in a short and a 1024-long sum of them in an int: bytes are
+    // widened to shorts to multiply, and each product vector is widened to ints to accumulate
+    private static void multiplyTileInt8(QuantizedMatrix A, QuantizedMatrix BT, IntMatrix acc,
+                                         int i0, int i1, int j0, int j1, int kk, int kEnd, boolean vectorize) {
+        byte[] a = A.data, bt = BT.data;
+        int vecLen = BYTE_SPECIES.length();
+        for (int i = i0; i < i1; i++) {
+            int aRow = i * A.ld;
+            for (int j = j0; j < j1; j++) {
+                int bRow = j * BT.ld;
+                int sum = 0;
+                int k = kk;
+                if (vectorize) {
+                    IntVector vsum = IntVector.zero(INT_SPECIES);
+                    for (; k <= kEnd - vecLen; k += vecLen) {
+                        ByteVector va = ByteVector.fromArray(BYTE_SPECIES, a, aRow + k);
+                        ByteVector vb = ByteVector.fromArray(BYTE_SPECIES, bt, bRow + k);
+                        for (int part = 0; part < 2; part++) {
+                            ShortVector prod = ((ShortVector) va.convertShape(VectorOperators.B2S, SHORT_SPECIES, part))
+                                    .mul((ShortVector) vb.convertShape(VectorOperators.B2S, SHORT_SPECIES, part));
+                            vsum = vsum.add(prod.convertShape(VectorOperators.S2I, INT_SPECIES, 0))
+                                    .add(prod.convertShape(VectorOperators.S2I, INT_SPECIES, 1));
+                        }
+                    }
+                    sum = vsum.reduceLanes(VectorOperators.ADD);
+                }
+                for (; k < kEnd; k++)
+                    sum += a[aRow + k] * bt[bRow + k];
+                acc.data[i * acc.ld + j] += sum;
+            }
+        }
+    }
+
+    // ---------------- SINGLE-PRECISION ENGINE ----------------
+    private static final VectorSpecies<Float> FLOAT_SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    // The flat blocked engine on float[] operands: twice the lanes per register and half the bytes per tile
+    private static void multiplyFloat(FloatMatrix A, FloatMatrix BT, FloatMatrix C, String vec,
+                                      ForkJoinPool pool, int blockSize) {
+        boolean fma = vec.equals("fma"), vectorize = vec.equals("simd");
+        forEachTile(A.size, A.size, A.size, pool, blockSize, (i0, i1, j0, j1, k0, k1) -> {
+            if (fma)
+                multiplyTileFma(A, BT, C, i0, i1, j0, j1, k0, k1);
+            else
+                multiplyTile(A, BT, C, i0, i1, j0, j1, k0, k1, vectorize);
+        });
+    }
+
+    private static void multiplyTile(FloatMatrix A, FloatMatrix BT, FloatMatrix C,
+                                     int i0, int i1, int j0, int j1, int kk, int kEnd, boolean vectorize) {
+        int vecLen = FLOAT_SPECIES.length();
+        float[] a = A.data, bt = BT.data, c = C.data;
+
+        for (int i = i0; i < i1; i++) {
+            int aRow = i * A.ld;
+            for (int j = j0; j < j1; j++) {
+                int bRow = j * BT.ld;
+                float sum = 0;
+                int k = kk;
+                if (vectorize) {
+                    for (; k <= kEnd - vecLen; k += vecLen) {
+                        FloatVector va = FloatVector.fromArray(FLOAT_SPECIES, a, aRow + k);
+                        FloatVector vb = FloatVector.fromArray(FLOAT_SPECIES, bt, bRow + k);
+                        sum += va.mul(vb).reduceLanes(VectorOperators.ADD);
+                    }
+                }
+                for (; k < kEnd; k++)
+                    sum += a[aRow + k] * bt[bRow + k];
+                c[i * C.ld + j] += sum;
+            }
+        }
+    }
+
+    // Float twin of the double FMA_MR x FMA_NR register-tiled kernel
+    private static void multiplyTileFma(FloatMatrix A, FloatMatrix BT, FloatMatrix C,
+                                        int ii, int iEnd, int jj, int jEnd, int kk, int kEnd) {
+        multiplyTileFma(A.data, ii * A.ld, A.ld, BT.data, jj * BT.ld, BT.ld, C.data, ii * C.ld + jj, C.ld,
+                iEnd - ii, jEnd - jj, kk, kEnd);
+    }
+
+    // Adds rows x cols of A * BT over k in [kk, kEnd) to C, where row r of A starts at
+    // aBase + r * lda, row j of BT at bBase + j * ldb and C(r, j) is at cBase + r * ldc + j
+    private static void multiplyTileFma(float[] a, int aBase, int lda, float[] bt, int bBase, int ldb,
+                                        float[] c, int cBase, int ldc, int rows, int cols, int kk, int kEnd) {
+        VectorSpecies<Float> species = FLOAT_SPECIES;
+        int vecLen = species.length();
+        int kVecEnd = kk + (kEnd - kk) / vecLen * vecLen;
+
+        int r = 0;
+        for (; r <= rows - FMA_MR; r += FMA_MR) {
+            int a0 = aBase + r * lda, a1 = a0 + lda, a2 = a1 + lda, a3 = a2 + lda;
+            int j = 0;
+            for (; j <= cols - FMA_NR; j += FMA_NR) {
+                int b0 = bBase + j * ldb, b1 = b0 + ldb;
+                FloatVector c00 = FloatVector.zero(species), c01 = FloatVector.zero(species);
+                FloatVector c10 = FloatVector.zero(species), c11 = FloatVector.zero(species);
+                FloatVector c20 = FloatVector.zero(species), c21 = FloatVector.zero(species);
+                FloatVector c30 = FloatVector.zero(species), c31 = FloatVector.zero(species);
+
+                for (int k = kk; k < kVecEnd; k += vecLen) {
+                    FloatVector vb0 = FloatVector.fromArray(species, bt, b0 + k);
+                    FloatVector vb1 = FloatVector.fromArray(species, bt, b1 + k);
+                    FloatVector va = FloatVector.fromArray(species, a, a0 + k);
+                    c00 = va.fma(vb0, c00);
+                    c01 = va.fma(vb1, c01);
+                    va = FloatVector.fromArray(species, a, a1 + k);
+                    c10 = va.fma(vb0, c10);
+                    c11 = va.fma(vb1, c11);
+                    va = FloatVector.fromArray(species, a, a2 + k);
+                    c20 = va.fma(vb0, c20);
+                    c21 = va.fma(vb1, c21);
+                    va = FloatVector.fromArray(species, a, a3 + k);
+                    c30 = va.fma(vb0, c30);
+                    c31 = va.fma(vb1, c31);
+                }
+
+                float s00 = c00.reduceLanes(VectorOperators.ADD), s01 = c01.reduceLanes(VectorOperators.ADD);
+                float s10 = c10.reduceLanes(VectorOperators.ADD), s11 = c11.reduceLanes(VectorOperators.ADD);
+                float s20 = c20.reduceLanes(VectorOperators.ADD), s21 = c21.reduceLanes(VectorOperators.ADD);
+                float s30 = c30.reduceLanes(VectorOperators.ADD), s31 = c31.reduceLanes(VectorOperators.ADD);
+                for (int k = kVecEnd; k < kEnd; k++) {
+                    s00 += a[a0 + k] * bt[b0 + k];
+                    s01 += a[a0 + k] * bt[b1 + k];
+                    s10 += a[a1 + k] * bt[b0 + k];
+                    s11 += a[a1 + k] * bt[b1 + k];
+                    s20 += a[a2 + k] * bt[b0 + k];
+                    s21 += a[a2 + k] * bt[b1 + k];
+                    s30 += a[a3 + k] * bt[b0 + k];
+                    s31 += a[a3 + k] * bt[b1 + k];
+                }
+
+                int c0 = cBase + r * ldc + j;
+                c[c0] += s00;
+                c[c0 + 1] += s01;
+                c[c0 + ldc] += s10;
+                c[c0 + ldc + 1] += s11;
+                c[c0 + 2 * ldc] += s20;
+                c[c0 + 2 * ldc + 1] += s21;
+                c[c0 + 3 * ldc] += s30;
+                c[c0 + 3 * ldc + 1] += s31;
+            }
+            // Columns left over when the block width is not a multiple of FMA_NR
+            for (; j < cols; j++)
+                for (int q = 0; q < FMA_MR; q++)
+                    c[cBase + (r + q) * ldc + j] += dotFma(a, aBase + (r + q) * lda, bt, bBase + j * ldb, kk, kEnd);
+        }
+        // Rows left over when the block height is not a multiple of FMA_MR
+        for (; r < rows; r++)
+            for (int j = 0; j < cols; j++)
+                c[cBase + r * ldc + j] += dotFma(a, aBase + r * lda, bt, bBase + j * ldb, kk, kEnd);
+    }
+
+    private static float dotFma(float[] a, int aRow, float[] bt, int bRow, int kStart, int kEnd) {
+        FloatVector acc = FloatVector.zero(FLOAT_SPECIES);
+        int k = kStart;
+        for (; k <= kEnd - FLOAT_SPECIES.length(); k += FLOAT_SPECIES.length())
+            acc = FloatVector.fromArray(FLOAT_SPECIES, a, aRow + k).fma(FloatVector.fromArray(FLOAT_SPECIES, bt, bRow + k), acc);
+        float sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; k < kEnd; k++)
+            sum += a[aRow + k] * bt[bRow + k];
+        return sum;
+    }
+
+    private static FloatMatrix toFloat(DenseMatrix M) {
+        FloatMatrix F = new FloatMatrix(M.size);
+        for (int i = 0; i < M.size; i++)
+            for (int j = 0; j < M.size; j++)
+                F.data[i * F.ld + j] = (float) M.data[i * M.ld + j];
+        return F;
+    }
+
+    private static FloatMatrix transposeMatrix(FloatMatrix M) {
+        int n = M.size;
+        FloatMatrix T = new FloatMatrix(n);
+        for (int i = 0; i < n; i++)
+            for (int j = 0; j < n; j++)
+                T.data[j * T.ld + i] = M.data[i * M.ld + j];
+        return T;
+    }
+
+    // ---------------- HALF-PRECISION ENGINE ----------------
+    // Per-thread fp32 copies of the current A and BT tile panels
+    private static final ThreadLocal<float[][]> HALF_PANELS = ThreadLocal.withInitial(() -> new float[2][0]);
+
+    // Operands stay binary16 in memory; each (tile, k-block) step widens its A and BT panels to
+    // float once and then runs an fp32 kernel over them, accumulating into fp32 C. The "fma"
+    // variant uses the same register-tiled kernel as fp32, so the rows compare like for like.
+    private static void multiplyHalf(HalfMatrix A, HalfMatrix BT, FloatMatrix C, String vec,
+                                     ForkJoinPool pool, int blockSize) {
+        boolean fma = vec.equals("fma"), vectorize = vec.equals("simd");
+        forEachTile(A.size, A.size, A.size, pool, blockSize, (i0, i1, j0, j1, k0, k1) -> {
+            int kLen = k1 - k0;
+            float[][] panels = HALF_PANELS.get();
+            if (panels[0].length < (i1 - i0) * kLen) panels[0] = new float[(i1 - i0) * kLen];
+            if (panels[1].length < (j1 - j0) * kLen) panels[1] = new float[(j1 - j0) * kLen];
+            float[] a = panels[0], bt = panels[1];
+            widenPanel(A, i0, i1, k0, k1, a);
+            widenPanel(BT, j0, j1, k0, k1, bt);
+            if (fma) {
+                multiplyTileFma(a, 0, kLen, bt, 0, kLen, C.data, i0 * C.ld + j0, C.ld, i1 - i0, j1 - j0, 0, kLen);
+                return;
+            }
+
+            for (int i = i0; i < i1; i++) {
+                int aRow = (i - i0) * kLen;
+                for (int j = j0; j < j1; j++) {
+                    int bRow = (j - j0) * kLen;
+                    float sum = 0;
+                    int k = 0;
+                    if (vectorize) {
+                        for (; k <= kLen - FLOAT_SPECIES.length(); k += FLOAT_SPECIES.length()) {
+                            FloatVector va = FloatVector.fromArray(FLOAT_SPECIES, a, aRow + k);
+                            FloatVector vb = FloatVector.fromArray(FLOAT_SPECIES, bt, bRow + k);
+                            sum += va.mul(vb).reduceLanes(VectorOperators.ADD);
+                        }
+                    }
+                    for (; k < kLen; k++)
+                        sum += a[aRow + k] * bt[bRow + k];
+                    C.data[i * C.ld + j] += sum;
+                }
+            }
+        });
+    }
+
+    // Rows r0..r1 over columns k0..k1 of M, packed densely into panel with row stride k1 - k0
+    private static void widenPanel(HalfMatrix M, int r0, int r1, int k0, int k1, float[] panel) {
+        int kLen = k1 - k0;
+        for (int r = r0; r < r1; r++) {
+            int src = r * M.ld + k0, dst = (r - r0) * kLen;
+            for (int k = 0; k < kLen; k++)
+                panel[dst + k] = Float.float16ToFloat(M.data[src + k]);
+        }
+    }
+
+    private static HalfMatrix toHalf(DenseMatrix M) {
+        HalfMatrix H = new HalfMatrix(M.size);
+        for (int i = 0; i < M.size; i++)
+            for (int j = 0; j < M.size; j++)
+                H.data[i * H.ld + j] = Float.floatToFloat16((float) M.data[i * M.ld + j]);
+        return H;
+    }
+
+    private static HalfMatrix transposeMatrix(HalfMatrix M) {
+        int n = M.size;
+        HalfMatrix T = new HalfMatrix(n);
+        for (int i = 0; i < n; i++)
+            for (int j = 0; j < n; j++)
+                T.data[j * T.ld + i] = M.data[i * M.ld + j];
+        return T;
+    }
+
+    // ---------------- ACCURACY ----------------
+    private static double maxAbsError(DenseMatrix C, DenseMatrix reference) {
+        double max = 0;
+        for (int i = 0; i < C.rows; i++)
+            for (int j = 0; j < C.cols; j++)
+                max = Math.max(max, Math.abs(C.data[i * C.ld + j] - reference.data[i * reference.ld + j]));
+        return max;
+    }
+
+    private static double maxAbsError(FloatMatrix C, DenseMatrix reference) {
+        double max = 0;
+        for (int i = 0; i < C.size; i++)
+            for (int j = 0; j < C.size; j++)
+                max = Math.max(max, Math.abs(C.data[i * C.ld + j] - reference.data[i * reference.ld + j]));
+        return max;
+    }
+
+    private static double maxAbsError(LongMatrix C, DenseMatrix reference) {
+        double max = 0;
+        for (int i = 0; i < C.size; i++)
+            for (int j = 0; j < C.size; j++)
+                max = Math.max(max, Math.abs(C.data[i * C.ld + j] - reference.data[i * reference.ld + j]));
+        return max;
+    }
+
+    private static double maxAbsError(JaggedMatrix C, DenseMatrix reference) {
+        double max = 0;
+        for (int i = 0; i < C.size; i++)
+            for (int j = 0; j < C.size; j++)
+                max = Math.max(max, Math.abs(C.data[i][j] - reference.data[i * reference.ld + j]));
+        return max;
+    }
+
+    private static double maxAbsError(OffHeapMatrix C, DenseMatrix reference) {
+        double max = 0;
+        for (int i = 0; i < C.size; i++)
+            for (int j = 0; j < C.size; j++)
+                max = Math.max(max, Math.abs(C.data.getAtIndex(ValueLayout.JAVA_DOUBLE, (long) i * C.ld + j)
+                        - reference.data[i * reference.ld + j]));
+        return max;
+    }
+
+    private static double maxAbsError(MappedMatrix C, DenseMatrix reference) {
+        double max = 0;
+        for (int i = 0; i < C.rows; i++)
+            for (int j = 0; j < C.cols; j++)
+                max = Math.max(max, Math.abs(C.data.get(OOC_DOUBLE, C.offset(i, j))
+                        - reference.data[i * reference.ld + j]));
+        return max;
+    }
+
+    // ---------------- SPARSE ENGINE (CSR) ----------------
+    // CSR only pays off when A is sparse enough to skip most of its entries
+    private static boolean csrPays(Inputs in) {
+        return in.densityA <= SPARSE_DENSITY_THRESHOLD;
+    }
+
+    // Chooses the CSR kernel from the density of B measured at load time
+    private static String sparsePath(Inputs in) {
+        return in.densityB > SPARSE_DENSITY_THRESHOLD ? "spmm" : "spgemm";
+    }
+
+    private static double density(DenseMatrix M) {
+        long nnz = 0;
+        for (int i = 0; i < M.size; i++)
+            for (int j = 0; j < M.size; j++)
+                if (M.data[i * M.ld + j] != 0) nnz++;
+        return (double) nnz / ((long) M.size * M.size);
+    }
+
+    private static CsrMatrix toCsr(DenseMatrix M) {
+        int n = M.size;
+        int nnz = 0;
+        for (int i = 0; i < n; i++)
+            for (int j = 0; j < n; j++)
+                if (M.data[i * M.ld + j] != 0) nnz++;
+
+        CsrMatrix S = new CsrMatrix(n, nnz);
+        int p = 0;
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                double v = M.data[i * M.ld + j];
+                if (v != 0) {
+                    S.colIdx[p] = j;
+                    S.values[p++] = v;
+                }
+            }
+            S.rowPtr[i + 1] = p;
+        }
+        return S;
+    }
+
+    private static DenseMatrix toDense(CsrMatrix S) {
+        DenseMatrix M = new DenseMatrix(S.size);
+        for (int i = 0; i < S.size; i++)
+            for (int p = S.rowPtr[i]; p < S.rowPtr[i + 1]; p++)
+                M.data[i * M.ld + S.colIdx[p]] = S.values[p];
+        return M;
+    }
+
+    // Sparse x dense: every non-zero A[i][k] adds A[i][k] * B[k][:] to C[i][:], so only stored
+    // entries cost work and B is streamed by rows without a transpose. Rows of C are independent.
+    private static void multiplySparse(CsrMatrix A, DenseMatrix B, DenseMatrix C, boolean vectorize, ForkJoinPool pool) {
+        if (pool != null)
+            pool.submit(() -> IntStream.range(0, A.size).parallel().forEach(i -> spmmRow(A, B, C, i, vectorize))).join();
+        else
+            for (int i = 0; i < A.size; i++) spmmRow(A, B, C, i, vectorize);
+    }
+
+    private static void spmmRow(CsrMatrix A, DenseMatrix B, DenseMatrix C, int i, boolean vectorize) {
+        VectorSpecies<Double> species = DoubleVector.SPECIES_PREFERRED;
+        int n = B.size;
+        double[] b = B.data, c = C.data;
+        int cRow = i * C.ld;
+        for (int p = A.rowPtr[i]; p < A.rowPtr[i + 1]; p++) {
+            double v = A.values[p];
+            int bRow = A.colIdx[p] * B.ld;
+            int j = 0;
+            if (vectorize) {
+                DoubleVector vv = DoubleVector.broadcast(species, v);
+                for (; j <= n - species.length(); j += species.length())
+                    DoubleVector.fromArray(species, b, bRow + j).fma(vv, DoubleVector.fromArray(species, c, cRow + j))
+                            .intoArray(c, cRow + j);
+            }
+            for (; j < n; j++)
+                c[cRow + j] += v * b[bRow + j];
+        }
+    }
+
+    // Per-thread dense accumulator and touched-column list for Gustavson's row-by-row SpGEMM
+    private static final ThreadLocal<SparseAccumulator> SPARSE_ACCUMULATOR = new ThreadLocal<>();
+
+    // Sparse x sparse (Gustavson): row i of C merges the B rows selected by row i of A in a dense
+    // accumulator, then keeps only the columns that were actually touched, in ascending order
+    private static CsrMatrix multiplySparse(CsrMatrix A, CsrMatrix B, ForkJoinPool pool) {
+        int n = A.size;
+        int[][] rowCols = new int[n][];
+        double[][] rowVals = new double[n][];
+        if (pool != null)
+            pool.submit(() -> IntStream.range(0, n).parallel().forEach(i -> spgemmRow(A, B, i, rowCols, rowVals))).join();
+        else
+            for (int i = 0; i < n; i++) spgemmRow(A, B, i, rowCols, rowVals);
+
+        int nnz = 0;
+        for (int[] cols : rowCols) nnz += cols.length;
+        CsrMatrix C = new CsrMatrix(n, nnz);
+        for (int i = 0; i < n; i++) {
+            int start = C.rowPtr[i];
+            System.arraycopy(rowCols[i], 0, C.colIdx, start, rowCols[i].length);
+            System.arraycopy(rowVals[i], 0, C.values, start, rowVals[i].length);
+            C.rowPtr[i + 1] = start + rowCols[i].length;
+        }
+        return C;
+    }
+
+    private static void spgemmRow(CsrMatrix A, CsrMatrix B, int i, int[][] rowCols, double[][] rowVals) {
+        SparseAccumulator acc = SPARSE_ACCUMULATOR.get();
+        if (acc == null || acc.values.length < B.size) {
+            acc = new SparseAccumulator(B.size);
+            SPARSE_ACCUMULATOR.set(acc);
+        }
+        int count = 0;
+        for (int p = A.rowPtr[i]; p < A.rowPtr[i + 1]; p++) {
+            double v = A.values[p];
+            int k = A.colIdx[p];
+            for (int q = B.rowPtr[k]; q < B.rowPtr[k + 1]; q++) {
+                int j = B.colIdx[q];
+                if (!acc.touched[j]) {
+                    acc.touched[j] = true;
+                    acc.columns[count++] = j;
+                }
+                acc.values[j] += v * B.values[q];
+            }
+        }
+
+        Arrays.sort(acc.columns, 0, count);
+        int[] cols = Arrays.copyOf(acc.columns, count);
+        double[] vals = new double[count];
+        for (int t = 0; t < count; t++) {
+            int j = cols[t];
+            vals[t] = acc.values[j];
+            acc.values[j] = 0;
+            acc.touched[j] = false;
+        }
+        rowCols[i] = cols;
+        rowVals[i] = vals;
+    }
+
+    static class SparseAccumulator {
+        final double[] values;
+        final boolean[] touched;
+        final int[] columns;
+
+        SparseAccumulator(int n) {
+            values = new double[n];
+            touched = new boolean[n];
+            columns = new int[n];
+        }
+    }
+
+    // ---------------- SPLIT-K ENGINE ----------------
+    private static int splitKSlices(int k) {
+        return Math.max(1, Math.min(SPLIT_K_SLICES, k / SPLIT_K_MIN_DEPTH));
+    }
+
+    // Copy of the first split-K result per configuration, to compare other thread counts against
+    private static final Map<String, double[]> SPLIT_K_RESULTS = new HashMap<>();
+
+    private static void checkReproducible(String key, int threads, DenseMatrix C) {
+        double[] first = SPLIT_K_RESULTS.putIfAbsent(key, C.data.clone());
+        if (first == null) return;
+        // Arrays.equals compares element bit patterns, so +0.0 and -0.0 count as different
+        if (Arrays.equals(first, C.data))
+            System.out.printf("[OK] splitk %s with %d threads is bitwise identical to the first run%n", key, threads);
+        else
+            System.out.printf("[ERROR] splitk %s with %d threads differs from the first run%n", key, threads);
+    }
+
+    // Split-K: when m and n leave too few (ii, jj) tiles to share out, k is cut into a fixed
+    // number of slices instead. Every slice computes a full m x n partial product sequentially into
+    // its own buffer, the slices run in parallel, and the buffers are merged by a pairwise tree
+    // (1 into 0, 3 into 2, ..., then 2 into 0, ...) whose shape depends only on the slice count.
+    // Each element is therefore summed in the same order whatever the number of workers.
+    static class SplitKEngine {
+        final int m, k, n, blockSize;
+        final String vec;
+        final ForkJoinPool pool;
+        final DenseMatrix[] partials;
+
+        SplitKEngine(int m, int k, int n, String vec, int blockSize, ForkJoinPool pool) {
+            this.m = m;
+            this.k = k;
+            this.n = n;
+            this.vec = vec;
+            this.blockSize = blockSize;
+            this.pool = pool;
+            this.partials = new DenseMatrix[splitKSlices(k)];
+            for (int s = 0; s < partials.length; s++)
+                partials[s] = new DenseMatrix(m, n);
+        }
+
+        // Adds A * B to C
+        void multiply(DenseMatrix A, PreparedB B, DenseMatrix C) {
+            if (B.transposed == null)
+                throw new IllegalArgumentException("B was prepared for the packed engine, not the split-K one");
+            DenseMatrix BT = B.transposed;
+            int slices = partials.length;
+            run(slices, s -> {
+                DenseMatrix P = partials[s];
+                P.clear();
+                int k0 = (int) ((long) k * s / slices), k1 = (int) ((long) k * (s + 1) / slices);
+                for (int ii = 0; ii < m; ii += blockSize)
+                    for (int jj = 0; jj < n; jj += blockSize)
+                        for (int kk = k0; kk < k1; kk += blockSize)
+                            multiplyTile(A, BT, P, ii, Math.min(ii + blockSize, m), jj, Math.min(jj + blockSize, n),
+                                    kk, Math.min(kk + blockSize, k1), vec);
+            });
+
+            // Each level is parallel over (pair, row chunk); the levels themselves run in order
+            int chunk = Math.max(1, blockSize);
+            int chunks = (m + chunk - 1) / chunk;
+            for (int stride = 1; stride < slices; stride *= 2) {
+                int step = stride * 2, pairs = (slices - stride + step - 1) / step, half = stride;
+                run(pairs * chunks, t -> {
+                    int dst = t / chunks * step;
+                    addRows(partials[dst + half], partials[dst], t % chunks * chunk, Math.min((t % chunks + 1) * chunk, m));
+                });
+            }
+            run(chunks, t -> addRows(partials[0], C, t * chunk, Math.min((t + 1) * chunk, m)));
+        }
+
+        private void run(int tasks, IntConsumer task) {
+            if (pool != null && tasks > 1)
+                pool.submit(() -> IntStream.range(0, tasks).parallel().forEach(task)).join();
+            else
+                for (int t = 0; t < tasks; t++) task.accept(t);
+        }
+
+        // dst[r0:r1, :] += src[r0:r1, :]
+        private void addRows(DenseMatrix src, DenseMatrix dst, int r0, int r1) {
+            for (int i = r0; i < r1; i++) {
+                int s = i * src.ld, d = i * dst.ld;
+                for (int j = 0; j < n; j++)
+                    dst.data[d + j] += src.data[s + j];
+            }
+        }
+    }
+
+    // ---------------- STRASSEN ENGINE ----------------
+    // Classic Strassen on A and BT. Quadrant Bpq of B is the transpose of quadrant BTqp, so the
+    // B-side operand sums are built from BT with the off-diagonal quadrants swapped and stay
+    // transposed, which is exactly what the blocked kernels expect. All temporaries come from a
+    // workspace allocated once per engine; levels that run their 7 products in parallel get 7
+    // private workspace sets, sequential levels share one set and fold each product into C
+    // as soon as it is computed.
+    static class StrassenEngine {
+        // Quadrant indices: 0 = (1,1), 1 = (1,2), 2 = (2,1), 3 = (2,2); terms are {quadrant, sign} pairs
+        static final int[][] A_TERMS = {
+                {0, 1, 3, 1}, {2, 1, 3, 1}, {0, 1}, {3, 1}, {0, 1, 1, 1}, {2, 1, 0, -1}, {1, 1, 3, -1}};
+        static final int[][] B_TERMS = {
+                {0, 1, 3, 1}, {0, 1}, {1, 1, 3, -1}, {2, 1, 0, -1}, {3, 1}, {0, 1, 1, 1}, {2, 1, 3, 1}};
+        // Sign with which product M1..M7 enters C11, C12, C21, C22
+        static final int[][] C_SIGNS = {
+                {1, 0, 0, 1}, {0, 0, 1, -1}, {0, 1, 0, 1}, {1, 0, 1, 0}, {-1, 1, 0, 0}, {0, 0, 0, 1}, {1, 0, 0, 0}};
+
+        final int size, padded, crossover;
+        final String vec;
+        final ForkJoinPool pool;
+        final Workspace root;
+        final DenseMatrix paddedA, paddedBT, paddedC;
+
+        StrassenEngine(int size, int crossover, String vec, ForkJoinPool pool) {
+            this.size = size;
+            this.crossover = Math.max(1, crossover);
+            this.vec = vec;
+            this.pool = pool;
+            // Halve until the crossover is reached, then pad so every level splits evenly
+            int levels = 0;
+            while ((size + (1 << levels) - 1) >> levels > this.crossover) levels++;
+            int leaf = (size + (1 << levels) - 1) >> levels;
+            this.padded = leaf << levels;
+            this.root = new Workspace(padded, this.crossover, pool != null ? STRASSEN_PARALLEL_LEVELS : 0);
+            boolean pad = padded != size;
+            this.paddedA = pad ? new DenseMatrix(padded) : null;
+            this.paddedBT = pad ? new DenseMatrix(padded) : null;
+            this.paddedC = pad ? new DenseMatrix(padded) : null;
+        }
+
+        // Overwrites C with A * B
+        void multiply(DenseMatrix A, PreparedB B, DenseMatrix C) {
+            if (B.transposed == null)
+                throw new IllegalArgumentException("B was prepared for the packed engine, not the Strassen one");
+            if (A.size != size)
+                throw new IllegalArgumentException("Strassen workspace was sized for " + size + ", got " + A.size);
+
+            DenseMatrix a = A, bt = B.transposed, c = C;
+            if (paddedA != null) {
+                copyInto(A, paddedA);
+                copyInto(B.transposed, paddedBT);
+                a = paddedA;
+                bt = paddedBT;
+                c = paddedC;
+            }
+            DenseMatrix fa = a, fbt = bt, fc = c;
+            if (pool != null)
+                pool.submit(() -> multiply(fa, fbt, fc, padded, root)).join();
+            else
+                multiply(a, bt, c, padded, root);
+            if (paddedC != null) {
+                for (int i = 0; i < size; i++)
+                    System.arraycopy(paddedC.data, i * paddedC.ld, C.data, i * C.ld, size);
+            }
+        }
+
+        // C[0:n, 0:n] = A[0:n, 0:n] * BT[0:n, 0:n]^T
+        private void multiply(DenseMatrix A, DenseMatrix BT, DenseMatrix C, int n, Workspace ws) {
+            if (ws.products == 0) {
+                clear(C, 0, 0, n);
+                multiplyTile(A, BT, C, 0, n, 0, n, 0, n, vec);
+                return;
+            }
+
+            int h = n / 2;
+            if (ws.products == 7) {
+                IntStream.range(0, 7).parallel().forEach(p -> {
+                    sum(A, A_TERMS[p], false, ws.ta[p], h);
+                    sum(BT, B_TERMS[p], true, ws.tb[p], h);
+                    multiply(ws.ta[p], ws.tb[p], ws.m[p], h, ws.child[p]);
+                });
+                clear(C, 0, 0, n);
+                for (int p = 0; p < 7; p++)
+                    accumulate(ws.m[p], C_SIGNS[p], C, h);
+            } else {
+                clear(C, 0, 0, n);
+                for (int p = 0; p < 7; p++) {
+                    sum(A, A_TERMS[p], false, ws.ta[0], h);
+                    sum(BT, B_TERMS[p], true, ws.tb[0], h);
+                    multiply(ws.ta[0], ws.tb[0], ws.m[0], h, ws.child[0]);
+                    accumulate(ws.m[0], C_SIGNS[p], C, h);
+                }
+            }
+        }
+
+        // dst = sum of sign * quadrant over the terms; transposed operands swap (1,2) and (2,1)
+        private static void sum(DenseMatrix src, int[] terms, boolean transposed, DenseMatrix dst, int h) {
+            for (int i = 0; i < h; i++) {
+                int d = i * dst.ld;
+                for (int t = 0; t < terms.length; t += 2) {
+                    int q = terms[t];
+                    if (transposed && (q == 1 || q == 2)) q = 3 - q;
+                    int s = (i + (q / 2) * h) * src.ld + (q % 2) * h;
+                    double sign = terms[t + 1];
+                    if (t == 0) {
+                        for (int j = 0; j < h; j++) dst.data[d + j] = sign * src.data[s + j];
+                    } else {
+                        for (int j = 0; j < h; j++) dst.data[d + j] += sign * src.data[s + j];
+                    }
+                }
+            }
+        }
 
-    private static long prevCpuTime = 0;
-    private static long prevNanoTime = 0;
+        // Adds +/- M into the quadrants of C listed in signs
+        private static void accumulate(DenseMatrix M, int[] signs, DenseMatrix C, int h) {
+            for (int q = 0; q < 4; q++) {
+                if (signs[q] == 0) continue;
+                double sign = signs[q];
+                for (int i = 0; i < h; i++) {
+                    int s = i * M.ld;
+                    int d = (i + (q / 2) * h) * C.ld + (q % 2) * h;
+                    for (int j = 0; j < h; j++) C.data[d + j] += sign * M.data[s + j];
+                }
+            }
+        }
 
-    public static void main(String[] args) throws Exception {
+        private static void clear(DenseMatrix M, int row, int col, int n) {
+            for (int i = 0; i < n; i++) {
+                int start = (row + i) * M.ld + col;
+                Arrays.fill(M.data, start, start + n, 0.0);
+            }
+        }
 
-        writeCsvHeader(OUTPUT_CSV);
-        OperatingSystemMXBean osBean =
-                (OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+        private static void copyInto(DenseMatrix src, DenseMatrix dst) {
+            for (int i = 0; i < src.size; i++)
+                System.arraycopy(src.data, i * src.ld, dst.data, i * dst.ld, src.size);
+        }
 
-        int cores = osBean.getAvailableProcessors();
-        prevCpuTime = osBean.getProcessCpuTime();
-        prevNanoTime = System.nanoTime();
+        // Operand sums, product and child workspace for one recursion level
+        static class Workspace {
+            final int products;
+            final DenseMatrix[] ta, tb, m;
+            final Workspace[] child;
 
-        // Attempt to stabilize CPU frequency (Windows/Linux may require admin/root)
-        stabilizeCpuFrequency();
+            Workspace(int n, int crossover, int parallelLevels) {
+                if (n <= crossover) {
+                    products = 0;
+                    ta = tb = m = null;
+                    child = null;
+                    return;
+                }
+                int h = n / 2;
+                products = parallelLevels > 0 ? 7 : 1;
+                ta = new DenseMatrix[products];
+                tb = new DenseMatrix[products];
+                m = new DenseMatrix[products];
+                child = new Workspace[products];
+                for (int p = 0; p < products; p++) {
+                    ta[p] = new DenseMatrix(h);
+                    tb[p] = new DenseMatrix(h);
+                    m[p] = new DenseMatrix(h);
+                    child[p] = new Workspace(h, crossover, parallelLevels - 1);
+                }
+            }
+        }
+    }
 
-        for (int size : MATRIX_SIZES) {
-            DenseMatrix A = loadMatrix("A", size);
-            DenseMatrix B = loadMatrix("B", size);
-            if (A == null || B == null) continue;
+    // ---------------- PACKED ENGINE (GotoBLAS-style panels) ----------------
+    // C += A * B without transposing B: KC x NC panels of B and MC x KC panels of A are copied
+    // into contiguous buffers laid out in the order the micro-kernel reads them, so the inner
+    // loop streams both operands with unit stride. Buffers are kept across tiles and calls.
+    static class PackedEngine {
+        static final int MR = 4;
 
-            // Pre-touch matrices to allocate pages and warm caches
-            preTouchMatrix(A);
-            preTouchMatrix(B);
+        final int mc, kc, nc, nr;
+        final boolean vectorize;
+        final RunStats stats;
+        double[] bPack = new double[0];
+        double[][] aPacks = new double[0][];
 
-            for (String vec : VECTORIZATION_OPTIONS) {
-                boolean vectorize = vec.equals("simd");
+        PackedEngine(int mc, int kc, int nc, boolean vectorize, RunStats stats) {
+            this.mc = mc;
+            this.kc = kc;
+            this.nc = nc;
+            this.vectorize = vectorize;
+            this.stats = stats;
+            // Two vector registers per row of the micro-tile
+            this.nr = 2 * DoubleVector.SPECIES_PREFERRED.length();
+        }
 
-                for (int threads : PARALLELIZATION_OPTIONS) {
-                    boolean useParallel = threads > 1;
-                    ForkJoinPool pool = useParallel ? new ForkJoinPool(threads) : null;
+        void multiply(DenseMatrix A, DenseMatrix B, DenseMatrix C, ForkJoinPool pool) {
+            multiply(A, B, null, C, pool);
+        }
 
-                    System.out.printf("[INFO] Testing size=%d vectorization=%s threads=%d%n",
-                            size, vec, threads);
+        void multiply(DenseMatrix A, PreparedB B, DenseMatrix C, ForkJoinPool pool) {
+            if (B.panels == null || B.kc != kc || B.nc != nc || B.nr != nr)
+                throw new IllegalArgumentException("B was not prepared with this engine's blocking");
+            multiply(A, null, B, C, pool);
+        }
 
-                    DenseMatrix C = new DenseMatrix(size);
-                    preTouchMatrix(C); // pre-touch result matrix as well
+        // Packs every KC x NC panel of B up front; the handle can then be multiplied any number of times
+        PreparedB prepare(DenseMatrix B) {
+            int n = B.cols, k = B.rows;
+            int numJc = (n + nc - 1) / nc, numPc = (k + kc - 1) / kc;
+            double[][] panels = new double[numJc * numPc][];
+            for (int jc = 0, jcBlock = 0; jc < n; jc += nc, jcBlock++) {
+                int ncCur = Math.min(nc, n - jc);
+                for (int pc = 0, pcBlock = 0; pc < k; pc += kc, pcBlock++) {
+                    int kcCur = Math.min(kc, k - pc);
+                    double[] panel = new double[roundUp(ncCur, nr) * kcCur];
+                    packB(B, pc, kcCur, jc, ncCur, panel);
+                    panels[jcBlock * numPc + pcBlock] = panel;
+                }
+            }
+            return new PreparedB(B.size, null, panels, kc, nc, nr);
+        }
 
-                    for (int iter = 1; iter <= WARMUP_ITERATIONS + REPETITIONS; iter++) {
-                        boolean warmup = iter <= WARMUP_ITERATIONS;
+        // Exactly one of B (packed panel by panel) and prepared (already packed) is non-null
+        private void multiply(DenseMatrix A, DenseMatrix B, PreparedB prepared, DenseMatrix C, ForkJoinPool pool) {
+            int m = A.rows, k = A.cols, n = C.cols;
+            // A prepared handle only records the size of the square B it was packed from
+            int bRows = B != null ? B.rows : prepared.size, bCols = B != null ? B.cols : prepared.size;
+            if (bRows != k || bCols != n || C.rows != m)
+                throw new IllegalArgumentException("Cannot multiply " + m + "x" + k + " by " + bRows + "x" + bCols
+                        + " into " + C.rows + "x" + C.cols);
+            int numIc = (m + mc - 1) / mc;
+            int numPc = (k + kc - 1) / kc;
+            int aPackLen = roundUp(Math.min(mc, m), MR) * Math.min(kc, k);
+            if (B != null) {
+                int bPackLen = roundUp(Math.min(nc, n), nr) * Math.min(kc, k);
+                if (bPack.length < bPackLen) bPack = new double[bPackLen];
+            }
+            if (aPacks.length < numIc || (numIc > 0 && aPacks[0].length < aPackLen)) {
+                aPacks = new double[numIc][];
+                for (int b = 0; b < numIc; b++) aPacks[b] = new double[aPackLen];
+            }
 
-                        System.gc();
-                        Thread.sleep(50);
-                        double allocMemMB = getUsedMemoryMB();
+            for (int jc = 0, jcBlock = 0; jc < n; jc += nc, jcBlock++) {
+                int ncCur = Math.min(nc, n - jc);
+                for (int pc = 0, pcBlock = 0; pc < k; pc += kc, pcBlock++) {
+                    int kcCur = Math.min(kc, k - pc);
+                    double[] bp;
+                    if (prepared != null) {
+                        bp = prepared.panels[jcBlock * numPc + pcBlock];
+                    } else {
+                        long t0 = System.nanoTime();
+                        packB(B, pc, kcCur, jc, ncCur, bPack);
+                        long elapsed = System.nanoTime() - t0;
+                        stats.packNanos.addAndGet(elapsed);
+                        stats.prepNanos.addAndGet(elapsed);
+                        bp = bPack;
+                    }
 
-                        String runId = "run_" + UUID.randomUUID().toString().substring(0, 8);
-                        String timestamp = DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(LocalDateTime.now());
+                    int jcFinal = jc, pcFinal = pc;
+                    if (pool != null) {
+                        pool.submit(() ->
+                                IntStream.range(0, numIc).parallel().forEach(icBlock ->
+                                        multiplyPanel(A, bp, C, icBlock, pcFinal, kcCur, jcFinal, ncCur))
+                        ).join();
+                    } else {
+                        for (int icBlock = 0; icBlock < numIc; icBlock++)
+                            multiplyPanel(A, bp, C, icBlock, pc, kcCur, jc, ncCur);
+                    }
+                }
+            }
+        }
 
-                        AtomicLong peakMemoryBytes = new AtomicLong(0);
-                        Thread sampler = new Thread(() -> {
-                            while (!Thread.currentThread().isInterrupted()) {
-                                long used = Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
-                                peakMemoryBytes.updateAndGet(p -> Math.max(p, used));
-                                try { Thread.sleep(1); } catch (InterruptedException e) { break; }
-                            }
-                        });
-                        sampler.setDaemon(true);
-                        sampler.start();
+        private void multiplyPanel(DenseMatrix A, double[] bp, DenseMatrix C, int icBlock, int pc, int kcCur, int jc, int ncCur) {
+            int ic = icBlock * mc;
+            int mcCur = Math.min(mc, A.rows - ic);
+            double[] aPack = aPacks[icBlock];
+            long t0 = System.nanoTime();
+            packA(A, ic, mcCur, pc, kcCur, aPack);
+            stats.packNanos.addAndGet(System.nanoTime() - t0);
 
-                        C.clear();
-                        long start = System.nanoTime();
-
-                        multiplyMatrices(A, B, vectorize, useParallel, C, pool);
-
-                        long end = System.nanoTime();
-                        sampler.interrupt();
-                        sampler.join();
-
-                        System.gc();
-                        Thread.sleep(50);
-
-                        double execMs = (end - start) / 1e6;
-                        double peakMem = peakMemoryBytes.get() / (1024.0 * 1024.0);
-
-                        long cpuTime = osBean.getProcessCpuTime();
-                        long nanoTime = System.nanoTime();
-                        long cpuDiff = cpuTime - prevCpuTime;
-                        long timeDiff = nanoTime - prevNanoTime;
-                        double cpuLoad = ((double) cpuDiff / timeDiff) * 100.0;
-                        prevCpuTime = cpuTime;
-                        prevNanoTime = nanoTime;
-
-                        System.out.printf("[%s] size=%d vec=%s thr=%d | time=%.2f ms | alloc=%.2f MB | peak=%.2f MB | cpu=%.1f%% | warmup=%b%n",
-                                runId, size, vec, threads, execMs, allocMemMB, peakMem, cpuLoad, warmup);
-
-                        saveCsv(OUTPUT_CSV, Arrays.asList(
-                                runId,
-                                String.valueOf(size),
-                                vec,
-                                String.valueOf(threads),
-                                String.format("%.3f", execMs),
-                                String.format("%.3f", allocMemMB),
-                                String.format("%.3f", peakMem),
-                                String.format("%.2f", cpuLoad),
-                                String.valueOf(cores),
-                                String.valueOf(iter),
-                                timestamp,
-                                warmup ? "1" : "0",
-                                "Pre-touched memory & CPU frequency stabilized"
-                        ));
-
-                        Thread.sleep(200);
-                    }
+            double[] tile = new double[MR * nr];
+            for (int jr = 0; jr < ncCur; jr += nr) {
+                int bOff = jr * kcCur;
+                for (int ir = 0; ir < mcCur; ir += MR) {
+                    int aOff = ir * kcCur;
+                    int mrCur = Math.min(MR, mcCur - ir), nrCur = Math.min(nr, ncCur - jr);
+                    if (vectorize)
+                        microKernelFma(aPack, aOff, bp, bOff, kcCur, C, ic + ir, jc + jr, mrCur, nrCur, tile);
+                    else
+                        microKernelScalar(aPack, aOff, bp, bOff, kcCur, C, ic + ir, jc + jr, mrCur, nrCur, tile);
+                }
+            }
+        }
 
-                    C = null;
-                    if (pool != null) pool.shutdown();
-                    System.gc();
-                    Thread.sleep(50);
+        // Slivers of nr columns; within a sliver, row p of the panel is nr consecutive values
+        private void packB(DenseMatrix B, int pc, int kcCur, int jc, int ncCur, double[] bPack) {
+            double[] b = B.data;
+            int pos = 0;
+            for (int jr = 0; jr < ncCur; jr += nr) {
+                int cols = Math.min(nr, ncCur - jr);
+                for (int p = 0; p < kcCur; p++) {
+                    int src = (pc + p) * B.ld + jc + jr;
+                    System.arraycopy(b, src, bPack, pos, cols);
+                    Arrays.fill(bPack, pos + cols, pos + nr, 0.0);
+                    pos += nr;
                 }
             }
+        }
 
-            A = null;
-            B = null;
-            System.gc();
-            Thread.sleep(100);
+        // Slivers of MR rows; within a sliver, column p of the panel is MR consecutive values
+        private void packA(DenseMatrix A, int ic, int mcCur, int pc, int kcCur, double[] aPack) {
+            double[] a = A.data;
+            int pos = 0;
+            for (int ir = 0; ir < mcCur; ir += MR) {
+                int rows = Math.min(MR, mcCur - ir);
+                for (int p = 0; p < kcCur; p++) {
+                    for (int r = 0; r < rows; r++)
+                        aPack[pos + r] = a[(ic + ir + r) * A.ld + pc + p];
+                    for (int r = rows; r < MR; r++)
+                        aPack[pos + r] = 0.0;
+                    pos += MR;
+                }
+            }
         }
-    }
 
-    // ---------------- MEMORY PRE-TOUCH ----------------
-    private static void preTouchMatrix(DenseMatrix M) {
-        for (int i = 0; i < M.size; i++)
-            for (int j = 0; j < M.size; j++)
-                M.data[i][j] += 0; // access each element to touch memory pages
-    }
+        private void microKernelFma(double[] aPack, int aOff, double[] bp, int bOff, int kcCur, DenseMatrix C,
+                                    int i, int j, int mrCur, int nrCur, double[] tile) {
+            VectorSpecies<Double> species = DoubleVector.SPECIES_PREFERRED;
+            int vecLen = species.length();
+            DoubleVector c00 = DoubleVector.zero(species), c01 = DoubleVector.zero(species);
+            DoubleVector c10 = DoubleVector.zero(species), c11 = DoubleVector.zero(species);
+            DoubleVector c20 = DoubleVector.zero(species), c21 = DoubleVector.zero(species);
+            DoubleVector c30 = DoubleVector.zero(species), c31 = DoubleVector.zero(species);
 
-    // ---------------- CPU FREQUENCY STABILIZATION ----------------
-    private static void stabilizeCpuFrequency() {
-        // Placeholder: Actual implementation is OS-specific and may require root/admin
-        // For Linux: sudo cpupower frequency-set -g performance
-        // For Windows: set max/min CPU in Power Options to 100%
-        System.out.println("[INFO] CPU frequency stabilization requested. Ensure performance mode is set.");
-    }
+            for (int p = 0; p < kcCur; p++) {
+                int bp0 = bOff + p * nr, ap0 = aOff + p * MR;
+                DoubleVector b0 = DoubleVector.fromArray(species, bp, bp0);
+                DoubleVector b1 = DoubleVector.fromArray(species, bp, bp0 + vecLen);
+                DoubleVector a = DoubleVector.broadcast(species, aPack[ap0]);
+                c00 = b0.fma(a, c00);
+                c01 = b1.fma(a, c01);
+                a = DoubleVector.broadcast(species, aPack[ap0 + 1]);
+                c10 = b0.fma(a, c10);
+                c11 = b1.fma(a, c11);
+                a = DoubleVector.broadcast(species, aPack[ap0 + 2]);
+                c20 = b0.fma(a, c20);
+                c21 = b1.fma(a, c21);
+                a = DoubleVector.broadcast(species, aPack[ap0 + 3]);
+                c30 = b0.fma(a, c30);
+                c31 = b1.fma(a, c31);
+            }
 
-    // ---------------- MATRIX LOADING ----------------
-    public static DenseMatrix loadMatrix(String label, int size) throws IOException {
-        String filePath = MATRIX_DIR + "/" + label + "_" + size + ".bin";
-        if (!Files.exists(Paths.get(filePath))) return null;
+            double[] c = C.data;
+            if (mrCur == MR && nrCur == nr) {
+                int c0 = i * C.ld + j;
+                DoubleVector.fromArray(species, c, c0).add(c00).intoArray(c, c0);
+                DoubleVector.fromArray(species, c, c0 + vecLen).add(c01).intoArray(c, c0 + vecLen);
+                c0 += C.ld;
+                DoubleVector.fromArray(species, c, c0).add(c10).intoArray(c, c0);
+                DoubleVector.fromArray(species, c, c0 + vecLen).add(c11).intoArray(c, c0 + vecLen);
+                c0 += C.ld;
+                DoubleVector.fromArray(species, c, c0).add(c20).intoArray(c, c0);
+                DoubleVector.fromArray(species, c, c0 + vecLen).add(c21).intoArray(c, c0 + vecLen);
+                c0 += C.ld;
+                DoubleVector.fromArray(species, c, c0).add(c30).intoArray(c, c0);
+                DoubleVector.fromArray(species, c, c0 + vecLen).add(c31).intoArray(c, c0 + vecLen);
+            } else {
+                // Edge tile: spill the accumulators and add back only the rows/columns inside C
+                c00.intoArray(tile, 0);
+                c01.intoArray(tile, vecLen);
+                c10.intoArray(tile, nr);
+                c11.intoArray(tile, nr + vecLen);
+                c20.intoArray(tile, 2 * nr);
+                c21.intoArray(tile, 2 * nr + vecLen);
+                c30.intoArray(tile, 3 * nr);
+                c31.intoArray(tile, 3 * nr + vecLen);
+                addTile(tile, C, i, j, mrCur, nrCur);
+            }
+        }
 
-        byte[] bytes = Files.readAllBytes(Paths.get(filePath));
-        ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        private void microKernelScalar(double[] aPack, int aOff, double[] bp, int bOff, int kcCur, DenseMatrix C,
+                                       int i, int j, int mrCur, int nrCur, double[] tile) {
+            Arrays.fill(tile, 0.0);
+            for (int p = 0; p < kcCur; p++) {
+                int bp0 = bOff + p * nr, ap0 = aOff + p * MR;
+                for (int r = 0; r < MR; r++) {
+                    double a = aPack[ap0 + r];
+                    int t0 = r * nr;
+                    for (int q = 0; q < nr; q++)
+                        tile[t0 + q] += a * bp[bp0 + q];
+                }
+            }
+            addTile(tile, C, i, j, mrCur, nrCur);
+        }
 
-        DenseMatrix m = new DenseMatrix(size);
-        for (int i = 0; i < size; i++)
-            for (int j = 0; j < size; j++)
-                m.data[i][j] = buffer.getInt();
+        private void addTile(double[] tile, DenseMatrix C, int i, int j, int mrCur, int nrCur) {
+            for (int r = 0; r < mrCur; r++) {
+                int c0 = (i + r) * C.ld + j;
+                for (int q = 0; q < nrCur; q++)
+                    C.data[c0 + q] += tile[r * nr + q];
+            }
+        }
 
-        System.out.println("[OK] Loaded matrix '" + label + "_" + size + "'");
-        return m;
+        private static int roundUp(int value, int multiple) {
+            return (value + multiple - 1) / multiple * multiple;
+        }
     }
 
-    // ---------------- MATRIX MULTIPLICATION ----------------
-    private static void multiplyMatrices(DenseMatrix A, DenseMatrix B, boolean vectorize,
-                                         boolean parallel, DenseMatrix C, ForkJoinPool pool) {
+    // ---------------- JAGGED LAYOUT (double[][] baseline) ----------------
+    private static void multiplyMatrices(JaggedMatrix A, JaggedMatrix B, boolean vectorize,
+                                         boolean parallel, JaggedMatrix C, ForkJoinPool pool, int blockSize) {
         int n = A.size;
-        int blockSize = 64;
-        DenseMatrix BT = transposeMatrix(B);
+        JaggedMatrix BT = transposeMatrix(B);
 
         if (parallel && pool != null) {
             int numBlocks = (n + blockSize - 1) / blockSize;
@@ -201,7 +4059,7 @@ public class Benchmark {
         }
     }
 
-    private static void multiplyBlock(DenseMatrix A, DenseMatrix BT, DenseMatrix C,
+    private static void multiplyBlock(JaggedMatrix A, JaggedMatrix BT, JaggedMatrix C,
                                       int ii, int jj, int kk, int blockSize, boolean vectorize) {
         int n = A.size;
         int vecLen = DoubleVector.SPECIES_PREFERRED.length();
@@ -227,26 +4085,505 @@ public class Benchmark {
         }
     }
 
-    private static DenseMatrix transposeMatrix(DenseMatrix M) {
+    private static JaggedMatrix transposeMatrix(JaggedMatrix M) {
         int n = M.size;
-        DenseMatrix T = new DenseMatrix(n);
+        JaggedMatrix T = new JaggedMatrix(n);
         for (int i = 0; i < n; i++)
             for (int j = 0; j < n; j++)
                 T.data[j][i] = M.data[i][j];
         return T;
     }
 
+    // ---------------- OFF-HEAP LAYOUT (MemorySegment) ----------------
+    private static void multiplyMatrices(OffHeapMatrix A, OffHeapMatrix B, boolean vectorize,
+                                         boolean parallel, OffHeapMatrix C, ForkJoinPool pool, int blockSize) {
+        int n = A.size;
+
+        // The transposed copy only lives for this call; workers read it from other threads when parallel
+        try (Arena scratch = parallel ? Arena.ofShared() : Arena.ofConfined()) {
+            OffHeapMatrix BT = transposeMatrix(B, scratch);
+
+            if (parallel && pool != null) {
+                int numBlocks = (n + blockSize - 1) / blockSize;
+                pool.submit(() ->
+                        IntStream.range(0, numBlocks).parallel().forEach(iiBlock -> {
+                            int ii = iiBlock * blockSize;
+                            for (int jj = 0; jj < n; jj += blockSize)
+                                for (int kk = 0; kk < n; kk += blockSize)
+                                    multiplyBlock(A, BT, C, ii, jj, kk, blockSize, vectorize);
+                        })
+                ).join();
+            } else {
+                for (int ii = 0; ii < n; ii += blockSize)
+                    for (int jj = 0; jj < n; jj += blockSize)
+                        for (int kk = 0; kk < n; kk += blockSize)
+                            multiplyBlock(A, BT, C, ii, jj, kk, blockSize, vectorize);
+            }
+        }
+    }
+
+    private static void multiplyBlock(OffHeapMatrix A, OffHeapMatrix BT, OffHeapMatrix C,
+                                      int ii, int jj, int kk, int blockSize, boolean vectorize) {
+        int n = A.size;
+        int vecLen = DoubleVector.SPECIES_PREFERRED.length();
+        MemorySegment a = A.data, bt = BT.data, c = C.data;
+        ByteOrder order = ByteOrder.nativeOrder();
+        int kEnd = Math.min(kk + blockSize, n);
+
+        for (int i = ii; i < Math.min(ii + blockSize, n); i++) {
+            long aRow = (long) i * A.ld;
+            for (int j = jj; j < Math.min(jj + blockSize, n); j++) {
+                long bRow = (long) j * BT.ld;
+                double sum = 0;
+                if (vectorize) {
+                    int k;
+                    for (k = kk; k <= kEnd - vecLen; k += vecLen) {
+                        DoubleVector va = DoubleVector.fromMemorySegment(DoubleVector.SPECIES_PREFERRED, a, (aRow + k) * Double.BYTES, order);
+                        DoubleVector vb = DoubleVector.fromMemorySegment(DoubleVector.SPECIES_PREFERRED, bt, (bRow + k) * Double.BYTES, order);
+                        sum += va.mul(vb).reduceLanes(VectorOperators.ADD);
+                    }
+                    for (; k < kEnd; k++)
+                        sum += a.getAtIndex(ValueLayout.JAVA_DOUBLE, aRow + k) * bt.getAtIndex(ValueLayout.JAVA_DOUBLE, bRow + k);
+                } else {
+                    for (int k = kk; k < kEnd; k++)
+                        sum += a.getAtIndex(ValueLayout.JAVA_DOUBLE, aRow + k) * bt.getAtIndex(ValueLayout.JAVA_DOUBLE, bRow + k);
+                }
+                long idx = (long) i * C.ld + j;
+                c.setAtIndex(ValueLayout.JAVA_DOUBLE, idx, c.getAtIndex(ValueLayout.JAVA_DOUBLE, idx) + sum);
+            }
+        }
+    }
+
+    private static OffHeapMatrix transposeMatrix(OffHeapMatrix M, Arena arena) {
+        int n = M.size;
+        OffHeapMatrix T = new OffHeapMatrix(n, arena);
+        for (long i = 0; i < n; i++)
+            for (long j = 0; j < n; j++)
+                T.data.setAtIndex(ValueLayout.JAVA_DOUBLE, j * T.ld + i, M.data.getAtIndex(ValueLayout.JAVA_DOUBLE, i * M.ld + j));
+        return T;
+    }
+
     // ---------------- MEMORY & CSV HELPERS ----------------
+    // Bytes allocated on the heap by all threads, to measure what a run allocates as opposed to what stays live
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
     private static double getUsedMemoryMB() {
         long usedBytes = Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
         return usedBytes / (1024.0 * 1024.0);
     }
 
+    // Native memory is invisible to Runtime.totalMemory(); segments allocated from an Arena
+    // are accounted in the "direct" buffer pool, file mappings in the "mapped" one
+    private static long getOffHeapMemoryBytes() {
+        long bytes = 0;
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class))
+            if (pool.getName().equals("direct") || pool.getName().equals("mapped"))
+                bytes += pool.getMemoryUsed();
+        return bytes;
+    }
+
+    // B transformed once into the form an engine reads (transposed rows or packed panels),
+    // so repeated multiplications with the same right-hand side skip that pass
+    static class PreparedB {
+        final int size;
+        final DenseMatrix transposed;
+        final double[][] panels;
+        final int kc, nc, nr;
+
+        PreparedB(int size, DenseMatrix transposed, double[][] panels, int kc, int nc, int nr) {
+            this.size = size;
+            this.transposed = transposed;
+            this.panels = panels;
+            this.kc = kc;
+            this.nc = nc;
+            this.nr = nr;
+        }
+
+        static PreparedB transposed(DenseMatrix B) {
+            return new PreparedB(B.size, transposeMatrix(B), null, 0, 0, 0);
+        }
+
+        // For the blocked engine, which skips the all-zero tiles of BT
+        static PreparedB transposedWithOccupancy(DenseMatrix B) {
+            PreparedB prepared = transposed(B);
+            prepared.transposed.occupancy = TileOccupancy.of(prepared.transposed);
+            return prepared;
+        }
+    }
+
+    // Per-iteration counters filled in by the engines and written next to the timings
+    static class RunStats {
+        final AtomicLong packNanos = new AtomicLong();
+        final AtomicLong prepNanos = new AtomicLong();
+        long setupNanos;
+        int workers;
+        String blocking = "";
+        String precision = "fp64";
+        String preparation = "per_call";
+        String epilogue = "none";
+        // Floating-point operations of one run when it is not 2 * m * k * n
+        double flops;
+        // Multiplications in one run, for engines that chain several
+        int steps = 1;
+        // Max |C - reference| of the configuration's result buffer, refreshed after every run
+        DoubleSupplier error;
+        double maxAbsError = Double.NaN;
+
+        // Time and bytes spent moving blocks between processes (distributed engines only)
+        final AtomicLong commNanos = new AtomicLong();
+        final AtomicLong commBytes = new AtomicLong();
+
+        void reset() {
+            packNanos.set(0);
+            prepNanos.set(0);
+            commNanos.set(0);
+            commBytes.set(0);
+        }
+    }
+
+    // Non-zero counts of OCCUPANCY_CELL x OCCUPANCY_CELL cells as a summed-area table, so any
+    // rectangle of cells is tested for all-zeros in O(1). It is a snapshot of the matrix data
+    // and must be rebuilt after the matrix is written.
+    static class TileOccupancy {
+        final int cellRows, cellCols;
+        // prefix[(r + 1) * (cellCols + 1) + (c + 1)] = non-zeros in cell rows 0..r and cell columns 0..c
+        final int[] prefix;
+
+        private TileOccupancy(int cellRows, int cellCols) {
+            this.cellRows = cellRows;
+            this.cellCols = cellCols;
+            this.prefix = new int[(cellRows + 1) * (cellCols + 1)];
+        }
+
+        static TileOccupancy of(DenseMatrix M) {
+            TileOccupancy occ = new TileOccupancy((M.rows + OCCUPANCY_CELL - 1) / OCCUPANCY_CELL,
+                    (M.cols + OCCUPANCY_CELL - 1) / OCCUPANCY_CELL);
+            int w = occ.cellCols + 1;
+            for (int i = 0; i < M.rows; i++)
+                for (int j = 0; j < M.cols; j++)
+                    if (M.data[i * M.ld + j] != 0)
+                        occ.prefix[(i / OCCUPANCY_CELL + 1) * w + j / OCCUPANCY_CELL + 1]++;
+            for (int r = 1; r <= occ.cellRows; r++)
+                for (int c = 1; c < w; c++)
+                    occ.prefix[r * w + c] += occ.prefix[(r - 1) * w + c] + occ.prefix[r * w + c - 1]
+                            - occ.prefix[(r - 1) * w + c - 1];
+            return occ;
+        }
+
+        // True when rows r0..r1 and columns c0..c1 (exclusive ends) hold only zeros; the range is
+        // widened to whole cells, so an unaligned tile can be reported dense but never falsely zero
+        boolean isZero(int r0, int r1, int c0, int c1) {
+            int w = cellCols + 1;
+            int cr0 = r0 / OCCUPANCY_CELL, cr1 = (r1 + OCCUPANCY_CELL - 1) / OCCUPANCY_CELL;
+            int cc0 = c0 / OCCUPANCY_CELL, cc1 = (c1 + OCCUPANCY_CELL - 1) / OCCUPANCY_CELL;
+            return prefix[cr1 * w + cc1] - prefix[cr0 * w + cc1] - prefix[cr1 * w + cc0] + prefix[cr0 * w + cc0] == 0;
+        }
+    }
+
+    // Row-major matrix in a single contiguous array; element (i, j) lives at data[i * ld + j]
     static class DenseMatrix {
+        int rows;
+        int cols;
+        // Edge of a square matrix, -1 for rectangular ones; the square-only engines index with it
         int size;
-        double[][] data;
+        int ld;
+        double[] data;
+        // Set for read-only operands so the blocked engine can skip all-zero tiles
+        TileOccupancy occupancy;
 
         DenseMatrix(int n) {
+            this(n, n);
+        }
+
+        DenseMatrix(int rows, int cols) {
+            this.rows = rows;
+            this.cols = cols;
+            size = rows == cols ? rows : -1;
+            ld = cols;
+            data = new double[Math.multiplyExact(rows, ld)];
+        }
+
+        // Views the first rows * cols elements of a reusable buffer as a rows x cols matrix
+        DenseMatrix(int rows, int cols, double[] buffer) {
+            if (buffer.length < (long) rows * cols)
+                throw new IllegalArgumentException("Buffer of " + buffer.length + " cannot hold " + rows + "x" + cols);
+            this.rows = rows;
+            this.cols = cols;
+            size = rows == cols ? rows : -1;
+            ld = cols;
+            data = buffer;
+        }
+
+        void clear() {
+            Arrays.fill(data, 0.0);
+        }
+    }
+
+    // Row-major fp32 matrix for the single-precision engine
+    static class FloatMatrix {
+        int size;
+        int ld;
+        float[] data;
+
+        FloatMatrix(int n) {
+            size = n;
+            ld = n;
+            data = new float[n * ld];
+        }
+
+        void clear() {
+            Arrays.fill(data, 0f);
+        }
+    }
+
+    // Compressed sparse rows: the non-zeros of row i are values[rowPtr[i] .. rowPtr[i + 1]) in
+    // columns colIdx[...], sorted by column
+    static class CsrMatrix {
+        int size;
+        int[] rowPtr;
+        int[] colIdx;
+        double[] values;
+
+        CsrMatrix(int n, int nnz) {
+            size = n;
+            rowPtr = new int[n + 1];
+            colIdx = new int[nnz];
+            values = new double[nnz];
+        }
+    }
+
+    // Row-major IEEE binary16 bit patterns for the half-precision engine
+    static class HalfMatrix {
+        int size;
+        int ld;
+        short[] data;
+
+        HalfMatrix(int n) {
+            size = n;
+            ld = n;
+            data = new short[n * ld];
+        }
+    }
+
+    // Row-major int8 codes with per-row dequantization metadata for the quantized engine
+    static class QuantizedMatrix {
+        int size;
+        int ld;
+        byte[] data;
+        float[] scale;
+        int[] zeroPoint;
+        // Sum of each row's codes, needed to remove the zero points after the integer product
+        int[] rowSum;
+
+        QuantizedMatrix(int n) {
+            size = n;
+            ld = n;
+            data = new byte[n * ld];
+            scale = new float[n];
+            zeroPoint = new int[n];
+            rowSum = new int[n];
+        }
+    }
+
+    // Row-major int32 matrix for the exact integer engine
+    static class IntMatrix {
+        int size;
+        int ld;
+        int[] data;
+        private long maxAbs = -1;
+
+        IntMatrix(int n) {
+            size = n;
+            ld = n;
+            data = new int[n * ld];
+        }
+
+        void clear() {
+            Arrays.fill(data, 0);
+        }
+
+        // Largest element magnitude; computed on first use, the engines never write their inputs
+        long maxAbs() {
+            if (maxAbs < 0) {
+                long max = 0;
+                for (int v : data) max = Math.max(max, Math.abs((long) v));
+                maxAbs = max;
+            }
+            return maxAbs;
+        }
+    }
+
+    // Row-major int64 result of the integer engine
+    static class LongMatrix {
+        int size;
+        int ld;
+        long[] data;
+
+        LongMatrix(int n) {
+            size = n;
+            ld = n;
+            data = new long[n * ld];
+        }
+
+        void clear() {
+            Arrays.fill(data, 0L);
+        }
+    }
+
+    // Everything one matrix size needs, loaded once and shared by all of its configurations
+    static class Inputs {
+        // A is m x k and B is k x n; size is their common edge for square inputs, -1 otherwise
+        final int m, k, n;
+        final int size;
+        final DenseMatrix A, B;
+        // Operands of a matrix chain (A is the first, B the last) and their dimensions; a plain
+        // product is the chain {A, B} with dims {m, k, n}
+        final DenseMatrix[] chain;
+        final int[] dims;
+        // A * B (the whole chain) from the double engine, used to check the other engines
+        final DenseMatrix reference;
+        IntMatrix AI, BI;
+        // Matrix files A and B were loaded from, for engines that stream them from disk
+        String fileA, fileB;
+        double densityA, densityB;
+        private CsrMatrix AS;
+        private FloatMatrix AF, BF;
+        private HalfMatrix AH, BH;
+        private DenseMatrix AP, powerReference, gramReference;
+        private QuantizedMatrix AQ;
+        private JaggedMatrix AJ, BJ;
+
+        Inputs(DenseMatrix A, DenseMatrix B) {
+            this(new DenseMatrix[]{A, B});
+        }
+
+        Inputs(DenseMatrix[] chain) {
+            this.chain = chain;
+            this.A = chain[0];
+            this.B = chain[chain.length - 1];
+            this.m = A.rows;
+            this.k = A.cols;
+            this.n = B.cols;
+            this.dims = new int[chain.length + 1];
+            dims[0] = m;
+            for (int i = 0; i < chain.length; i++) dims[i + 1] = chain[i].cols;
+            this.size = isSquare() ? m : -1;
+            this.reference = new DenseMatrix(m, n);
+        }
+
+        boolean isSquare() {
+            return chain.length == 2 && m == k && k == n;
+        }
+
+        String shape() {
+            StringBuilder s = new StringBuilder().append(dims[0]);
+            for (int i = 1; i < dims.length; i++) s.append('x').append(dims[i]);
+            return s.toString();
+        }
+
+        String label() {
+            return isSquare() ? String.valueOf(m) : shape();
+        }
+
+        JaggedMatrix jaggedA() {
+            if (AJ == null) {
+                AJ = toJagged(A);
+                preTouchMatrix(AJ);
+            }
+            return AJ;
+        }
+
+        JaggedMatrix jaggedB() {
+            if (BJ == null) {
+                BJ = toJagged(B);
+                preTouchMatrix(BJ);
+            }
+            return BJ;
+        }
+
+        FloatMatrix floatA() {
+            if (AF == null) AF = toFloat(A);
+            return AF;
+        }
+
+        FloatMatrix floatB() {
+            if (BF == null) BF = toFloat(B);
+            return BF;
+        }
+
+        // A is the operand the sparse engine always reads as CSR, so it is converted once
+        CsrMatrix csrA() {
+            if (AS == null) AS = toCsr(A);
+            return AS;
+        }
+
+        HalfMatrix halfA() {
+            if (AH == null) AH = toHalf(A);
+            return AH;
+        }
+
+        // A with every row scaled to sum 1 (rows of zeros stay zero), so its powers stay bounded
+        DenseMatrix stochasticA() {
+            if (AP == null) {
+                AP = new DenseMatrix(A.rows, A.cols);
+                for (int i = 0; i < A.rows; i++) {
+                    double sum = 0;
+                    for (int j = 0; j < A.cols; j++) sum += A.data[i * A.ld + j];
+                    for (int j = 0; j < A.cols; j++)
+                        AP.data[i * AP.ld + j] = sum == 0 ? 0 : A.data[i * A.ld + j] / sum;
+                }
+                preTouchMatrix(AP);
+            }
+            return AP;
+        }
+
+        // A * A^T from the general blocked engine
+        DenseMatrix gramReference() {
+            if (gramReference == null) {
+                gramReference = new DenseMatrix(m, m);
+                multiplyMatrices(A, transposeMatrix(A), "fma", false, gramReference, null, 64);
+            }
+            return gramReference;
+        }
+
+        // stochasticA()^POWER_EXPONENT by repeated multiplication with the blocked engine
+        DenseMatrix powerReference() {
+            if (powerReference == null) {
+                DenseMatrix P = stochasticA(), R = P;
+                for (long p = 1; p < POWER_EXPONENT; p++) {
+                    DenseMatrix next = new DenseMatrix(m, m);
+                    multiplyMatrices(R, P, "fma", false, next, null, 64);
+                    R = next;
+                }
+                powerReference = R;
+            }
+            return powerReference;
+        }
+
+        HalfMatrix halfB() {
+            if (BH == null) BH = toHalf(B);
+            return BH;
+        }
+
+        QuantizedMatrix quantizedA() {
+            if (AQ == null) AQ = quantize(A);
+            return AQ;
+        }
+
+        // Layout copies are only needed while their layout is being measured
+        void dropLayoutCopies() {
+            AJ = null;
+            BJ = null;
+        }
+    }
+
+    // One heap array per row, kept as the baseline for the "jagged" layout option
+    static class JaggedMatrix {
+        int size;
+        double[][] data;
+
+        JaggedMatrix(int n) {
             size = n;
             data = new double[n][n];
         }
@@ -257,6 +4594,23 @@ public class Benchmark {
         }
     }
 
+    // Row-major matrix in native memory; its lifetime is bound to the Arena it was allocated from
+    static class OffHeapMatrix {
+        int size;
+        int ld;
+        MemorySegment data;
+
+        OffHeapMatrix(int n, Arena arena) {
+            size = n;
+            ld = n;
+            data = arena.allocate((long) n * ld * Double.BYTES, 64);
+        }
+
+        void clear() {
+            data.fill((byte) 0);
+        }
+    }
+
     private static void saveCsv(String out, List<String> row) {
         try (PrintWriter w = new PrintWriter(new FileWriter(out, true))) {
             w.println(String.join(";", row));
@@ -266,17 +4620,34 @@ public class Benchmark {
     }
 
     private static void writeCsvHeader(String out) {
+        String header = String.join(";", Arrays.asList(
+                "run_id", "matrix_size", "shape", "layout", "engine", "precision", "vectorization", "epilogue", "threads", "workers", "blocking",
+                "execution_time_ms", "gflops", "max_abs_error", "tiles_skipped",
+                "b_preparation", "prep_ms", "amortized_time_ms", "pack_ms", "comm_ms", "comm_mb",
+                "alloc_mem_mb", "allocated_mb", "steps", "peak_mem_mb", "offheap_mem_mb", "cpu_usage_percent", "num_cores",
+                "repetition", "timestamp", "warm-up", "notes"
+        ));
         File f = new File(out);
-        if (!f.exists()) {
-            try (PrintWriter w = new PrintWriter(new FileWriter(f))) {
-                w.println(String.join(";", Arrays.asList(
-                        "run_id", "matrix_size", "vectorization", "threads", "execution_time_ms",
-                        "alloc_mem_mb", "peak_mem_mb", "cpu_usage_percent", "num_cores",
-                        "repetition", "timestamp", "warm-up", "notes"
-                )));
+        if (f.exists()) {
+            // Results written with a different column set cannot share a file; keep them aside
+            try (BufferedReader r = new BufferedReader(new FileReader(f))) {
+                if (header.equals(r.readLine())) return;
             } catch (IOException e) {
-                System.out.println("[ERROR] CSV header write failed.");
+                System.out.println("[ERROR] CSV header check failed: " + e.getMessage());
+                return;
+            }
+            String stamp = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss").format(LocalDateTime.now());
+            File archived = new File(out.replace(".csv", "_" + stamp + ".csv"));
+            if (!f.renameTo(archived)) {
+                System.out.println("[ERROR] Could not archive CSV with outdated header.");
+                return;
             }
+            System.out.println("[INFO] CSV columns changed, previous results moved to " + archived.getName());
+        }
+        try (PrintWriter w = new PrintWriter(new FileWriter(f))) {
+            w.println(header);
+        } catch (IOException e) {
+            System.out.println("[ERROR] CSV header write failed.");
         }
     }
 }
@@ -1,10 +1,22 @@
+import argparse
 import numpy as np
 import os
 
 # Configuration
 MATRIX_SIZES = [64, 128, 256, 512, 1024]
+SHAPES = [(100000, 256, 64), (256, 8192, 256), (2048, 64, 2048)]  # (m, k, n): A is m x k, B is k x n
+CHAINS = [(4096, 16, 4096, 16), (512, 2048, 32, 2048, 512, 8)]  # Mi is dims[i-1] x dims[i]
 OUTPUT_DIR = 'matrices'
 SEED = 42
+DENSITY = 1.0  # Fraction of entries kept; the rest are set to zero
+MAGIC = 0x3158544D  # "MTX1"; every file starts with MAGIC, rows, cols as little-endian int32
+
+parser = argparse.ArgumentParser(description='Generate the benchmark input matrices.')
+parser.add_argument('--density', type=float, default=DENSITY,
+                    help='fraction of entries that keep their random value (default: %(default)s)')
+args = parser.parse_args()
+if not 0.0 < args.density <= 1.0:
+    parser.error('--density must be in (0, 1]')
 
 # Ensure output directory exists
 os.makedirs(OUTPUT_DIR, exist_ok=True)
@@ -12,16 +24,36 @@ os.makedirs(OUTPUT_DIR, exist_ok=True)
 # Use numpy Generator for reproducibility
 rng = np.random.default_rng(SEED)
 
+
+def generate(rows, cols):
+    # Generate dense random matrix with integers 0-9
+    matrix = rng.integers(low=0, high=10, size=(rows, cols), dtype=np.int32)
+
+    # Zero out entries to reach the requested density (dense runs keep the original stream)
+    if args.density < 1.0:
+        matrix[rng.random((rows, cols)) >= args.density] = 0
+    return matrix
+
+
+def save(matrix, filename):
+    filepath = os.path.join(OUTPUT_DIR, filename)
+
+    # Save matrix in binary format, preceded by its dimensions
+    with open(filepath, 'wb') as f:
+        np.array([MAGIC, *matrix.shape], dtype='<i4').tofile(f)
+        matrix.astype('<i4').tofile(f)
+
+    print(f'Saved {filepath}')
+
+
 for size in MATRIX_SIZES:
     for matrix_label in ['A', 'B']:
-        # Generate dense random matrix with integers 0-9
-        matrix = rng.integers(low=0, high=10, size=(size, size), dtype=np.int32)
-
-        # Create filename
-        filename = f'{matrix_label}_{size}.bin'
-        filepath = os.path.join(OUTPUT_DIR, filename)
+        save(generate(size, size), f'{matrix_label}_{size}.bin')
 
-        # Save matrix in binary format
-        matrix.tofile(filepath)
+for m, k, n in SHAPES:
+    save(generate(m, k), f'A_{m}x{k}.bin')
+    save(generate(k, n), f'B_{k}x{n}.bin')
 
-        print(f'Saved {filepath}')
+for c, dims in enumerate(CHAINS):
+    for i in range(1, len(dims)):
+        save(generate(dims[i - 1], dims[i]), f'chain{c}_M{i}.bin')
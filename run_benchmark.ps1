@@ -1,7 +1,11 @@
 # ----------------------------
 # PowerShell script to run JMH benchmarks with checks
+# Pass -Autotune to search block sizes first (saved to benchmark_wisdom.properties)
+# Pass -Density 0.05 to generate sparse inputs (fraction of non-zero entries)
 # ----------------------------
 
+param([switch]$Autotune, [double]$Density = 1.0)
+
 function Check-ExitCode {
     param($stepDescription)
     if ($LASTEXITCODE -eq 0) {
@@ -16,7 +20,7 @@ function Check-ExitCode {
 Write-Host "`n============================================================"
 Write-Host "Step 1: Generating matrices..."
 Write-Host "============================================================`n"
-python .\generate_matrices.py
+python .\generate_matrices.py --density $Density
 Check-ExitCode "Matrix generation"
 
 # 2 Compile Benchmark.java
@@ -24,15 +28,25 @@ Write-Host "`n============================================================"
 Write-Host "Step 2: Compiling Benchmark.java..."
 Write-Host "============================================================`n"
 #javac .\Benchmark.java
-javac --add-modules jdk.incubator.vector Benchmark.java
+# java.lang.foreign (off-heap matrices) is a preview API in JDK 21
+javac --release 21 --enable-preview --add-modules jdk.incubator.vector Benchmark.java
 Check-ExitCode "Benchmark compilation"
 
+# 3 Optional: tune block sizes for this host
+if ($Autotune) {
+    Write-Host "`n============================================================"
+    Write-Host "Step 3a: Autotuning block sizes..."
+    Write-Host "============================================================`n"
+    java -Xmx4G -XX:+TieredCompilation -XX:ActiveProcessorCount=16 --enable-preview --add-modules jdk.incubator.vector Benchmark autotune
+    Check-ExitCode "Block-size autotuning"
+}
+
 # 3 Execute Benchmark.java
 Write-Host "`n============================================================"
 Write-Host "Step 3: Running Benchmark..."
 Write-Host "============================================================`n"
 #java -Xmx4G -XX:+TieredCompilation -XX:ActiveProcessorCount=16 Benchmark
-java -Xmx4G -XX:+TieredCompilation -XX:ActiveProcessorCount=16 --add-modules jdk.incubator.vector Benchmark
+java -Xmx4G -XX:+TieredCompilation -XX:ActiveProcessorCount=16 --enable-preview --add-modules jdk.incubator.vector Benchmark
 Check-ExitCode "Benchmark execution"
 
 Write-Host "`n[OK] All steps completed successfully." -ForegroundColor Green